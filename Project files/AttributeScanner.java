@@ -0,0 +1,187 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+
+/**
+ * Splits the attribute text of a tag into attributes in a single pass,
+ * for both HTMLTag and HTMLCursor. Values may be double-quoted,
+ * single-quoted or unquoted, and there may be whitespace around the '='.
+ * A quote that is never closed runs to the end of the text.
+ *
+ * Where the text has the form name="value", which is the only form the
+ * original attribute pattern read as a value, it is read the same way:
+ * whitespace just inside the quote is dropped unless nothing else is
+ * left, in which case one character of it is kept. An '=' with nothing
+ * after it stays part of the name, as it did under that pattern.
+ *
+ * Attributes are handed to a Sink as offsets into the text, so a caller
+ * can keep them without building any Strings. HTMLTag prints them with
+ * appendAsWritten instead, which gives the original HTMLTag's output.
+ */
+final class AttributeScanner {
+    /**
+     * Receives each attribute in the order it was written
+     */
+    interface Sink {
+        /**
+         * Takes the attribute whose name is text[keyStart, keyEnd) and
+         * whose value is text[valueStart, valueEnd), or which has no value
+         * if valueStart is -1
+         */
+        void attribute(int keyStart, int keyEnd, int valueStart, int valueEnd);
+    }
+
+    private AttributeScanner() {
+    }
+
+    /**
+     * Hands every attribute in the given range of the text to the sink
+     */
+    static void split(char[] text, int from, int to, Sink sink) {
+        int i = from;
+        while (true) {
+            while (i < to && isSpace(text[i])) {
+                i++;
+            }
+            if (i >= to) {
+                break;
+            }
+
+            // A name runs to the next whitespace or '=', but always takes
+            // at least one character
+            int keyStart = i++;
+            while (i < to && !isSpace(text[i]) && text[i] != '=') {
+                i++;
+            }
+            int keyEnd = i;
+
+            int j = i;
+            while (j < to && isSpace(text[j])) {
+                j++;
+            }
+            if (j >= to || text[j] != '=') {
+                sink.attribute(keyStart, keyEnd, -1, -1);
+                continue;
+            }
+            int equals = j++;
+            while (j < to && isSpace(text[j])) {
+                j++;
+            }
+
+            if (j >= to) {
+                // Either "name=", or "name" and "=" as two names
+                if (keyEnd == equals) {
+                    sink.attribute(keyStart, equals + 1, -1, -1);
+                } else {
+                    sink.attribute(keyStart, keyEnd, -1, -1);
+                    sink.attribute(equals, equals + 1, -1, -1);
+                }
+                break;
+            } else if (text[j] == '"' || text[j] == '\'') {
+                int close = j + 1;
+                while (close < to && text[close] != text[j]) {
+                    close++;
+                }
+                int valueStart = j + 1;
+                if (j == equals + 1 && text[j] == '"') {
+                    while (valueStart < close - 1 && isSpace(text[valueStart])) {
+                        valueStart++;
+                    }
+                }
+                sink.attribute(keyStart, keyEnd, valueStart, close);
+                i = Math.min(close + 1, to);
+            } else {
+                int valueStart = j;
+                while (j < to && !isSpace(text[j])) {
+                    j++;
+                }
+                sink.attribute(keyStart, keyEnd, valueStart, j);
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * Writes the given attribute text as the original HTMLTag printed it,
+     * with a space before each attribute. Its pattern read name="value"
+     * with the value running to the last '"' in the text, less whitespace
+     * just inside the opening quote unless nothing else was left, and took
+     * anything else as a bare name up to the next whitespace. So quoted
+     * values print as written, spacing and all, while the whitespace
+     * between bare names is collapsed to one space.
+     */
+    static void appendAsWritten(String text, Appendable out) throws IOException {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int lastQuote = text.lastIndexOf('"', end - 1);
+        int i = 0;
+        while (true) {
+            // The text was trimmed, not just stripped of whitespace, before
+            // each attribute
+            while (i < end && text.charAt(i) <= ' ') {
+                i++;
+            }
+            if (i >= end) {
+                break;
+            }
+            int run = i;
+            while (run < end && !isSpace(text.charAt(run))) {
+                run++;
+            }
+
+            out.append(' ');
+            int equals = openingQuote(text, i, run, end, lastQuote);
+            if (equals < 0) {
+                out.append(text, i, run);
+                i = run;
+                continue;
+            }
+            int valueStart = equals + 2;
+            while (valueStart < lastQuote - 1 && isSpace(text.charAt(valueStart))) {
+                valueStart++;
+            }
+            out.append(text, i, Math.min(equals, run)).append("=\"")
+                    .append(text, valueStart, lastQuote).append('"');
+            i = lastQuote + 1;
+        }
+    }
+
+    /**
+     * Returns where the '=' is of the '="' that the original pattern read
+     * a value after, for the name starting the run text[from, run), or -1
+     * if it read the run as a bare name. The name is as long as it can be
+     * while leaving at least one character before the last quote.
+     */
+    private static int openingQuote(String text, int from, int run, int end, int lastQuote) {
+        int j = run;
+        while (j < end && isSpace(text.charAt(j))) {
+            j++;
+        }
+        if (j + 1 < end && text.charAt(j) == '=' && text.charAt(j + 1) == '"' && j + 3 <= lastQuote) {
+            return j;
+        }
+        for (int k = Math.min(run - 2, lastQuote - 3); k > from; k--) {
+            if (text.charAt(k) == '=' && text.charAt(k + 1) == '"') {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true for the characters matched by \s in a regular expression.
+     * Every parser uses this one definition of whitespace.
+     */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Returns true for the bytes matched by \s, which are all ASCII
+     */
+    static boolean isSpace(byte b) {
+        return b >= 0 && isSpace((char) b);
+    }
+}
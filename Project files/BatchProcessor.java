@@ -0,0 +1,241 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads, fixes and pretty-prints many HTML files in parallel. Each file is
+ * written to the output directory under the same relative path, and a
+ * summary of every file is written to summary.txt there.
+ *
+ * At most a fixed number of files are in flight at once: submitting
+ * another file waits until one finishes, so only that many pages are
+ * ever held in memory however many files there are.
+ *
+ * Every page is parsed under ParseLimits, DEFAULT unless set otherwise,
+ * so a hostile page fails on its own instead of holding up a thread.
+ */
+public class BatchProcessor {
+    public static final String SUMMARY_FILE = "summary.txt";
+
+    /**
+     * The outcome of processing one file. The error is null if the file
+     * was processed.
+     */
+    public record FileResult(Path source, Path output, long chars, int tags, String error) {
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    /**
+     * The outcome of processing a batch of files.
+     */
+    public record Summary(List<FileResult> files, long chars, long tags, int failures, long nanos) {
+        public String toString() {
+            return String.format("%d files, %d failed, %d chars, %d tags in %.1f ms",
+                    files.size(), failures, chars, tags, nanos / 1e6);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Path outputDir;
+    private volatile ParseLimits limits = ParseLimits.DEFAULT;
+
+    /**
+     * Creates a BatchProcessor that runs on the given executor, with at most
+     * maxInFlight files in progress at once, writing under the given output
+     * directory. The executor is not shut down by this class.
+     */
+    public BatchProcessor(ExecutorService executor, int maxInFlight, Path outputDir) {
+        if (executor == null || maxInFlight < 1 || outputDir == null) {
+            throw new IllegalArgumentException();
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Creates a BatchProcessor that runs on a new ForkJoinPool with the
+     * given number of threads, with twice that many files in flight.
+     */
+    public BatchProcessor(int threads, Path outputDir) {
+        this(new ForkJoinPool(threads), 2 * threads, outputDir);
+    }
+
+    /**
+     * Sets the limits every page processed from now on is parsed under. If
+     * the given limits are null, throws an IllegalArgumentException.
+     */
+    public void setLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.limits = limits;
+    }
+
+    /**
+     * Returns the executor files are processed on
+     */
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Processes every .html and .htm file under the given directory. Each
+     * output has the same path relative to the output directory as its
+     * source has relative to the given directory.
+     */
+    public Summary process(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(BatchProcessor::isHTML)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        return process(root, files);
+    }
+
+    /**
+     * Processes the given files. Each output has the file's absolute path,
+     * without its root, as its path relative to the output directory.
+     */
+    public Summary process(Collection<Path> files) throws IOException {
+        return process(null, files);
+    }
+
+    private static boolean isHTML(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".html") || name.endsWith(".htm");
+    }
+
+    private Summary process(Path root, Collection<Path> files) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(this.outputDir);
+
+        ParseLimits limits = this.limits;
+        Semaphore permits = new Semaphore(this.maxInFlight);
+        List<Future<FileResult>> pending = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                permits.acquire();
+                Path output = this.outputDir.resolve(relativeOutput(root, file));
+                try {
+                    pending.add(this.executor.submit(() -> {
+                        try {
+                            return processFile(file, output, limits);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while submitting files", e);
+        }
+
+        List<FileResult> results = new ArrayList<>(pending.size());
+        long chars = 0;
+        long tags = 0;
+        int failures = 0;
+        for (Future<FileResult> future : pending) {
+            FileResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for files", e);
+            } catch (ExecutionException e) {
+                // processFile records its own failures, so this is a bug
+                throw new IllegalStateException(e.getCause());
+            }
+            results.add(result);
+            chars += result.chars();
+            tags += result.tags();
+            if (!result.succeeded()) {
+                failures++;
+            }
+        }
+        results.sort(Comparator.comparing(FileResult::source));
+
+        Summary summary = new Summary(List.copyOf(results), chars, tags, failures, System.nanoTime() - start);
+        writeSummary(summary);
+        return summary;
+    }
+
+    private static Path relativeOutput(Path root, Path file) {
+        if (root != null) {
+            return root.relativize(file);
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        return absolute.getRoot().relativize(absolute);
+    }
+
+    /**
+     * Loads, fixes and pretty-prints a single file. Any failure is recorded
+     * in the result instead of being thrown, so that one bad page does not
+     * stop the batch.
+     */
+    static FileResult processFile(Path file, Path output, ParseLimits limits) {
+        long chars = 0;
+        int tags = 0;
+        try {
+            String page;
+            try (MappedFileReader in = new MappedFileReader(file.toFile())) {
+                page = HTMLPage.read(in, in.size());
+            }
+            chars = page.length();
+
+            HTMLManager manager = new HTMLManager(TokenBuffer.parse(page, limits));
+            manager.fixHTML();
+            tags = manager.size();
+
+            Path parent = output.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                manager.writeTo(out);
+            }
+            return new FileResult(file, output, chars, tags, null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(file, output, chars, tags, e.toString());
+        }
+    }
+
+    private void writeSummary(Summary summary) throws IOException {
+        Path file = this.outputDir.resolve(SUMMARY_FILE);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (FileResult result : summary.files()) {
+                out.printf("%s\t%d chars\t%d tags\t%s%n", result.source(), result.chars(), result.tags(),
+                        result.succeeded() ? "ok" : result.error());
+            }
+            out.println(summary);
+            if (out.checkError()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Writes a synthetic page of a given shape and size as a stream, so that
+ * pages far larger than the heap can be generated. The same profile, seed
+ * and size always give the same page.
+ *
+ * Once the page reaches the requested size, the tags still open are
+ * closed and the stream ends, so the page is slightly longer than asked.
+ */
+public class CorpusGenerator extends Reader {
+    private static final String[] ELEMENTS = {
+        "div", "p", "span", "a", "b", "i", "em", "ul", "li", "table", "tr", "td", "section", "article"
+    };
+    private static final String[] VOID_TAGS = {
+        "br", "hr", "img src=\"photo.jpg\" alt=\"a photo\"", "input type=\"text\" name=\"q\"", "meta charset=\"utf-8\""
+    };
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "lorem", "ipsum", "&amp;", "caf\u00e9", "42"
+    };
+    private static final String[] ATTRIBUTE_NAMES = {
+        "id", "class", "href", "title", "style", "data-id", "data-value", "role", "lang", "hidden"
+    };
+    private static final String[] BLOCKS = {
+        "<div class=\"section\" id=\"main\">\n",
+        "  <p>Some paragraph text with <b>bold</b> words in it.</p>\n",
+        "  <!-- a comment -->\n",
+        "  <img src=\"picture.png\" alt=\"picture\"/>\n",
+        "  <ul><li>one</li><li>two</li></ul>\n",
+        "  <script>var x = 1 < 2;</script>\n",
+        "</div>\n"
+    };
+    private static final String[] SCRIPT_LINES = {
+        "var x = 1 < 2;\n", "if (a <b) { s = '</p>'; }\n", "for (i = 0; i < n; i++) { t += i; }\n",
+        "document.write('<div>');\n", "// a comment with </div> in it\n"
+    };
+
+    private final CorpusProfile profile;
+    private final long size;
+    private final Random random;
+    private final Stack<String> open;
+    private final StringBuilder pending;
+    private long produced;
+    private int offset;
+    private boolean done;
+
+    /**
+     * Creates a generator for a page of about the given size in chars
+     */
+    public CorpusGenerator(CorpusProfile profile, long seed, long size) {
+        if (profile == null || size < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.profile = profile;
+        this.size = size;
+        this.random = new Random(seed);
+        this.open = new Stack<>();
+        this.pending = new StringBuilder();
+    }
+
+    /**
+     * Returns the whole page as a String
+     */
+    public static String generate(CorpusProfile profile, long seed, int size) {
+        StringWriter page = new StringWriter(size + 1024);
+        try (CorpusGenerator generator = new CorpusGenerator(profile, seed, size)) {
+            generator.transferTo(page);
+        } catch (IOException e) {
+            // Neither side does any I/O
+            throw new UncheckedIOException(e);
+        }
+        return page.toString();
+    }
+
+    /**
+     * Returns a well-formed page of roughly the given size in chars, made
+     * of the same few blocks of markup over and over
+     */
+    public static String repeatedPage(int size) {
+        StringBuilder page = new StringBuilder(size + 256);
+        page.append("<html><body>\n");
+        while (page.length() < size) {
+            for (String block : BLOCKS) {
+                page.append(block);
+            }
+        }
+        page.append("</body></html>\n");
+        return page.toString();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        while (this.offset == this.pending.length()) {
+            if (this.done) {
+                return -1;
+            }
+            this.pending.setLength(0);
+            this.offset = 0;
+            step();
+            this.produced += this.pending.length();
+        }
+        int n = Math.min(len, this.pending.length() - this.offset);
+        this.pending.getChars(this.offset, this.offset + n, cbuf, off);
+        this.offset += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Appends the next piece of the page to pending
+     */
+    private void step() {
+        if (this.produced >= this.size) {
+            // Close everything still open, then stop
+            while (!this.open.isEmpty()) {
+                closeTop();
+            }
+            this.done = true;
+            return;
+        }
+
+        CorpusProfile p = this.profile;
+        int roll = this.random.nextInt(100);
+        if ((roll -= p.open) < 0) {
+            if (this.open.size() < p.maxDepth) {
+                openTag();
+            } else {
+                closeTop();
+            }
+        } else if ((roll -= p.close) < 0) {
+            if (!this.open.isEmpty()) {
+                closeTop();
+            } else {
+                text();
+            }
+        } else if ((roll -= p.script) < 0) {
+            script();
+        } else if ((roll -= p.comment) < 0) {
+            this.pending.append("<!-- ");
+            words(1 + this.random.nextInt(2 * p.words + 1));
+            this.pending.append(" -->");
+        } else if ((roll -= p.voidTag) < 0) {
+            this.pending.append('<').append(pick(VOID_TAGS)).append(this.random.nextBoolean() ? "/>" : ">");
+        } else if ((roll -= p.stray) < 0) {
+            this.pending.append("</").append(pick(ELEMENTS)).append('>');
+        } else {
+            text();
+        }
+    }
+
+    private void openTag() {
+        String element = pick(ELEMENTS);
+        this.open.push(element);
+        this.pending.append('<').append(element);
+        int count = this.profile.attributes == 0 ? 0 : this.random.nextInt(2 * this.profile.attributes + 1);
+        for (int i = 0; i < count; i++) {
+            String key = pick(ATTRIBUTE_NAMES) + i;
+            switch (this.random.nextInt(4)) {
+                case 0 -> this.pending.append(' ').append(key).append("=\"").append(pick(WORDS)).append(' ').append(pick(WORDS)).append('"');
+                case 1 -> this.pending.append(' ').append(key).append("='say \"").append(pick(WORDS)).append("\"'");
+                case 2 -> this.pending.append(' ').append(key).append('=').append(this.random.nextInt(1000));
+                default -> this.pending.append(' ').append(key);
+            }
+        }
+        this.pending.append('>');
+    }
+
+    /**
+     * Closes the innermost open tag, unless the profile leaves it unclosed
+     */
+    private void closeTop() {
+        String element = this.open.pop();
+        if (this.random.nextDouble() >= this.profile.unclosed) {
+            this.pending.append("</").append(element).append('>');
+        }
+    }
+
+    private void script() {
+        this.pending.append("<script>\n");
+        for (int lines = 1 + this.random.nextInt(20); lines > 0; lines--) {
+            this.pending.append(pick(SCRIPT_LINES));
+        }
+        this.pending.append("</script>");
+    }
+
+    private void text() {
+        words(1 + this.random.nextInt(2 * this.profile.words + 1));
+        this.pending.append('\n');
+    }
+
+    private void words(int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                this.pending.append(' ');
+            }
+            this.pending.append(pick(WORDS));
+        }
+    }
+
+    private String pick(String[] choices) {
+        return choices[this.random.nextInt(choices.length)];
+    }
+}
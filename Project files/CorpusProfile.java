@@ -0,0 +1,48 @@
+package edu.caltech.cs2.project03;
+
+/**
+ * enumerates the shapes of page CorpusGenerator can write. Each step of
+ * the generator opens a tag, closes one, or writes a script, comment,
+ * void tag or stray closing tag, with the weights out of 100 given here,
+ * and writes text the rest of the time.
+ */
+public enum CorpusProfile {
+    //         depth  open close script comment void stray  attrs unclosed  text
+    MIXED(       24,  30,   28,    2,     5,     8,   2,     2,    0.05,    12),
+    DEEP(      2000,  45,   15,    0,     2,     2,   0,     1,    0.02,     3),
+    WIDE(         3,  20,   20,    0,     2,    20,   0,     1,    0.00,     8),
+    ATTRIBUTES(  12,  35,   33,    0,     0,    20,   0,    20,    0.00,     2),
+    SCRIPTS(     12,  25,   25,   30,     5,     5,   0,     1,    0.00,     6),
+    TEXT(        12,  10,   10,    0,     2,     2,   0,     1,    0.00,   300),
+    COMMENTS(    12,  20,   20,    0,    50,     5,   0,     1,    0.00,     6),
+    MALFORMED(   24,  30,   20,    2,     5,     8,  15,     2,    0.40,    10);
+
+    /** The deepest the generator will nest tags */
+    public final int maxDepth;
+    final int open;
+    final int close;
+    final int script;
+    final int comment;
+    final int voidTag;
+    final int stray;
+    /** The mean number of attributes on each tag */
+    public final int attributes;
+    /** The chance that a tag is never closed */
+    public final double unclosed;
+    /** The mean number of words in each run of text */
+    public final int words;
+
+    CorpusProfile(int maxDepth, int open, int close, int script, int comment, int voidTag, int stray,
+                  int attributes, double unclosed, int words) {
+        this.maxDepth = maxDepth;
+        this.open = open;
+        this.close = close;
+        this.script = script;
+        this.comment = comment;
+        this.voidTag = voidTag;
+        this.stray = stray;
+        this.attributes = attributes;
+        this.unclosed = unclosed;
+        this.words = words;
+    }
+}
@@ -0,0 +1,95 @@
+package edu.caltech.cs2.project03;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTMLMetrics that add up everything reported to them, from any number of
+ * threads.
+ */
+public class CountingMetrics implements HTMLMetrics {
+    private static final HTMLTagType[] TYPES = HTMLTagType.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LongAdder[] tokens = new LongAdder[TYPES.length];
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder[] nanos = new LongAdder[PHASES.length];
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder synthesized = new LongAdder();
+
+    public CountingMetrics() {
+        for (int i = 0; i < this.tokens.length; i++) {
+            this.tokens[i] = new LongAdder();
+        }
+        for (int i = 0; i < this.nanos.length; i++) {
+            this.nanos[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void tokens(HTMLTagType type, long count) {
+        this.tokens[type.ordinal()].add(count);
+    }
+
+    @Override
+    public void charsScanned(long chars) {
+        this.chars.add(chars);
+    }
+
+    @Override
+    public void phase(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void fixed(int maxDepth, int synthesizedClosingTags) {
+        this.maxDepth.accumulate(maxDepth);
+        this.synthesized.add(synthesizedClosingTags);
+    }
+
+    /**
+     * Returns the number of tokens of the given type reported so far
+     */
+    public long getTokens(HTMLTagType type) {
+        return this.tokens[type.ordinal()].sum();
+    }
+
+    public long getCharsScanned() {
+        return this.chars.sum();
+    }
+
+    /**
+     * Returns the nanoseconds reported for the given phase so far
+     */
+    public long getNanos(Phase phase) {
+        return this.nanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns the deepest any fixed page went
+     */
+    public int getMaxDepth() {
+        return (int) this.maxDepth.get();
+    }
+
+    public long getSynthesizedClosingTags() {
+        return this.synthesized.sum();
+    }
+
+    /**
+     * Returns a summary of every measurement, one per line
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (HTMLTagType type : TYPES) {
+            result.append(String.format("tokens.%-14s %,d%n", type, getTokens(type)));
+        }
+        result.append(String.format("%-21s %,d%n", "chars", getCharsScanned()));
+        for (Phase phase : PHASES) {
+            result.append(String.format("time.%-16s %.3f ms%n", phase, getNanos(phase) / 1e6));
+        }
+        result.append(String.format("%-21s %d%n", "maxDepth", getMaxDepth()));
+        result.append(String.format("%-21s %,d%n", "synthesizedClosing", getSynthesizedClosingTags()));
+        return result.toString();
+    }
+}
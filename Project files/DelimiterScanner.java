@@ -0,0 +1,98 @@
+package edu.caltech.cs2.project03;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Finds delimiters in long runs of text without looking at one character
+ * at a time from Java code.
+ *
+ * Over a String that is searched to its end, String.indexOf does the
+ * work: HotSpot compiles it to SIMD instructions. Over bytes, eight bytes
+ * are read as one long and tested together (SWAR, "SIMD within a
+ * register"), with a plain loop for the last few bytes and for short
+ * ranges. A char array cannot be read a word at a time without Unsafe, so
+ * it is scanned with a plain loop. The Vector API would do the same job,
+ * but it is still an incubator module that needs flags at build and run
+ * time.
+ */
+final class DelimiterScanner {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    // Shorter ranges are not worth reading a word at a time
+    private static final int MIN_SWAR_LENGTH = 16;
+
+    private DelimiterScanner() {
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given char in the
+     * given range of the text, or -1 if there is none. No char past the
+     * range is read.
+     */
+    static int indexOf(String text, char c, int from, int to) {
+        if (to == text.length()) {
+            return text.indexOf(c, from);
+        }
+        // String.indexOf cannot be told where to stop before Java 21
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given char in the
+     * given range of the array, or -1 if there is none.
+     */
+    static int indexOf(char[] buf, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given byte in the
+     * given range of the array, or -1 if there is none.
+     */
+    static int indexOf(byte[] buf, byte b, int from, int to) {
+        if (to - from < MIN_SWAR_LENGTH) {
+            return indexOfScalar(buf, b, from, to);
+        }
+        long pattern = (b & 0xFFL) * ONES;
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            // Bytes equal to b become zero, and the lowest zero byte is the
+            // lowest to get its high bit set here; bytes above it may get
+            // theirs set by the borrow, but they come later
+            long word = (long) LONGS.get(buf, i) ^ pattern;
+            long zeros = (word - ONES) & ~word & HIGHS;
+            if (zeros != 0) {
+                return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
+        }
+        return indexOfScalar(buf, b, i, to);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given byte in the
+     * given range of the array, one byte at a time, or -1 if there is none.
+     */
+    static int indexOfScalar(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
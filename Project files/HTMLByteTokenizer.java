@@ -0,0 +1,693 @@
+package edu.caltech.cs2.project03;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Tokenizes a page held as bytes, without decoding it into chars first.
+ * Every delimiter the tokenizer looks for is ASCII, and in UTF-8 and the
+ * other charsets supports() accepts, an ASCII byte always stands for that
+ * character, so the same scan HTMLTokenizer makes over chars finds the
+ * same tokens over bytes.
+ *
+ * Only what a tag's reader asks for is decoded. Element names are decoded
+ * once per spelling and shared between tags; the contents of comments and
+ * content, and the attribute text of other tags, stay bytes until they are
+ * read. Tags made here hold on to the page's bytes until then.
+ *
+ * The tags are exactly the ones HTMLTokenizer makes from the page decoded
+ * with the same charset. Under ParseLimits, lengths and positions count
+ * bytes rather than chars.
+ *
+ * sniff() reads the charset of a page from its byte order mark or a meta
+ * tag near its start, and parser() uses it to pick this tokenizer or
+ * HTMLTokenizer over the decoded page.
+ */
+public class HTMLByteTokenizer implements Iterator<HTMLTag> {
+    /** How far into a page sniff() looks for a meta tag, as browsers do */
+    public static final int PRESCAN_LENGTH = 1024;
+
+    // Charsets where a byte below 0x80 is always that ASCII character
+    private static final Set<String> ASCII_SAFE = Set.of("UTF-8", "US-ASCII", "ISO-8859-1", "windows-1252");
+
+    private static final int NAME_CACHE_SIZE = 256;
+
+    private final byte[] buf;
+    private final int start;
+    private final int limit;
+    private final Charset charset;
+    private int pos;
+    private boolean inScript;
+    private ParseLimits.Guard guard;
+
+    // Bounds of the token found by the last call to scan(), and how far a
+    // scan may look
+    private int end;
+    private int dataStart;
+    private int dataEnd;
+    private int tokenEnd;
+    private boolean opensScript;
+
+    // Element names already decoded, by a hash of their bytes
+    private final byte[][] nameBytes = new byte[NAME_CACHE_SIZE][];
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private final int[] nameIds = new int[NAME_CACHE_SIZE];
+
+    /**
+     * Creates a tokenizer over the given UTF-8 bytes, which are not copied
+     */
+    public HTMLByteTokenizer(byte[] page) {
+        this(page, 0, page.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a tokenizer over the given range of bytes in the given
+     * charset, which are not copied. If the range is out of bounds or
+     * supports() rejects the charset, throws an IllegalArgumentException.
+     */
+    public HTMLByteTokenizer(byte[] page, int offset, int length, Charset charset) {
+        if (page == null || offset < 0 || length < 0 || length > page.length - offset || !supports(charset)) {
+            throw new IllegalArgumentException();
+        }
+        this.buf = page;
+        this.start = offset;
+        this.limit = offset + length;
+        this.charset = charset;
+        this.pos = offset;
+        this.end = this.limit;
+    }
+
+    /**
+     * Creates a tokenizer over the remaining bytes of the given buffer, in
+     * the given charset, without changing its position. A buffer backed by
+     * an array is not copied; any other buffer, such as a mapped file, is
+     * copied once. If supports() rejects the charset, throws an
+     * IllegalArgumentException.
+     */
+    public HTMLByteTokenizer(ByteBuffer page, Charset charset) {
+        this(array(page), offset(page), page.remaining(), charset);
+    }
+
+    private static byte[] array(ByteBuffer page) {
+        if (page.hasArray()) {
+            return page.array();
+        }
+        byte[] copy = new byte[page.remaining()];
+        page.duplicate().get(copy);
+        return copy;
+    }
+
+    private static int offset(ByteBuffer page) {
+        return page.hasArray() ? page.arrayOffset() + page.position() : 0;
+    }
+
+    /**
+     * Returns true if pages in the given charset can be tokenized as bytes
+     */
+    public static boolean supports(Charset charset) {
+        return charset != null && ASCII_SAFE.contains(charset.name());
+    }
+
+    /**
+     * Returns a tokenizer over the remaining bytes of the given buffer,
+     * which throws an HTMLParseException where the page breaks the given
+     * limits. The page's charset is sniffed, and any byte order mark is
+     * skipped. Pages in a charset supports() accepts are tokenized as
+     * bytes, and other pages are decoded and given to an HTMLTokenizer.
+     */
+    public static Iterator<HTMLTag> parser(ByteBuffer page, ParseLimits limits) {
+        Charset charset = sniff(page);
+        ByteBuffer body = page.duplicate();
+        body.position(body.position() + bomLength(page));
+        if (supports(charset)) {
+            HTMLByteTokenizer tokenizer = new HTMLByteTokenizer(body, charset);
+            tokenizer.setLimits(limits);
+            return tokenizer;
+        }
+        HTMLTokenizer tokenizer = new HTMLTokenizer(charset.decode(body).toString());
+        tokenizer.setLimits(limits);
+        return tokenizer;
+    }
+
+    /**
+     * Returns a Reader over the given stream decoded in its sniffed
+     * charset, past any byte order mark
+     */
+    static Reader reader(InputStream in) throws IOException {
+        return reader(in, null);
+    }
+
+    /**
+     * Returns a Reader over the given stream, past any byte order mark. The
+     * stream is decoded in the charset its byte order mark gives, or else
+     * the given charset, as a Content-Type header declares it, or else its
+     * sniffed charset if the given one is null. Sniffing waits for the
+     * first PRESCAN_LENGTH bytes, or the end of the stream, to arrive.
+     */
+    static Reader reader(InputStream in, Charset declared) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, HTMLTokenizer.DEFAULT_BUFFER_SIZE);
+        // A declared charset only gives way to a byte order mark
+        int length = declared == null ? PRESCAN_LENGTH : 3;
+        buffered.mark(length);
+        byte[] prefix = buffered.readNBytes(length);
+        buffered.reset();
+        ByteBuffer head = ByteBuffer.wrap(prefix);
+        int bom = bomLength(head);
+        buffered.skipNBytes(bom);
+        return new InputStreamReader(buffered, bom > 0 || declared == null ? sniff(head) : declared);
+    }
+
+    /**
+     * Returns the charset of the remaining bytes of the given buffer, without
+     * changing its position. A byte order mark decides it; failing that,
+     * the first meta tag in the first PRESCAN_LENGTH bytes that names a
+     * charset the JDK supports; failing that, UTF-8.
+     */
+    public static Charset sniff(ByteBuffer page) {
+        int from = page.position();
+        int to = from + Math.min(page.remaining(), PRESCAN_LENGTH);
+        if (bomLength(page) == 3) {
+            return StandardCharsets.UTF_8;
+        } else if (bomLength(page) == 2) {
+            return page.get(from) == (byte) 0xFE ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE;
+        }
+
+        for (int i = from; i < to; i++) {
+            if (page.get(i) != '<') {
+                continue;
+            }
+            if (matches(page, i + 1, to, "!--")) {
+                // Meta tags inside comments do not count
+                int close = i + 4;
+                while (close < to && !matches(page, close, to, "-->")) {
+                    close++;
+                }
+                i = close + 2;
+            } else if (matches(page, i + 1, to, "meta") && i + 5 < to
+                    && (AttributeScanner.isSpace(page.get(i + 5)) || page.get(i + 5) == '/')) {
+                int close = i + 5;
+                while (close < to && page.get(close) != '>') {
+                    close++;
+                }
+                Charset charset = charsetIn(page, i + 5, close);
+                if (charset != null) {
+                    // A page read this far as ASCII cannot be UTF-16, which
+                    // browsers take to mean UTF-8
+                    return charset.name().startsWith("UTF-16") ? StandardCharsets.UTF_8 : charset;
+                }
+                i = close;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Returns the length of the byte order mark at the position of the given
+     * buffer, or 0 if there is none
+     */
+    static int bomLength(ByteBuffer page) {
+        int from = page.position();
+        int remaining = page.remaining();
+        if (remaining >= 3 && page.get(from) == (byte) 0xEF && page.get(from + 1) == (byte) 0xBB
+                && page.get(from + 2) == (byte) 0xBF) {
+            return 3;
+        }
+        if (remaining >= 2 && ((page.get(from) == (byte) 0xFE && page.get(from + 1) == (byte) 0xFF)
+                || (page.get(from) == (byte) 0xFF && page.get(from + 1) == (byte) 0xFE))) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the first supported charset named by "charset=" in the given
+     * range of a meta tag, as in both <meta charset="..."> and
+     * <meta content="text/html; charset=...">, or null if there is none
+     */
+    private static Charset charsetIn(ByteBuffer page, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!matches(page, i, to, "charset")) {
+                continue;
+            }
+            int j = i + 7;
+            while (j < to && AttributeScanner.isSpace(page.get(j))) {
+                j++;
+            }
+            if (j >= to || page.get(j) != '=') {
+                continue;
+            }
+            j++;
+            while (j < to && AttributeScanner.isSpace(page.get(j))) {
+                j++;
+            }
+            if (j < to && (page.get(j) == '"' || page.get(j) == '\'')) {
+                j++;
+            }
+            StringBuilder name = new StringBuilder();
+            while (j < to && page.get(j) > ' ' && page.get(j) != '"' && page.get(j) != '\''
+                    && page.get(j) != ';' && page.get(j) != '/') {
+                name.append((char) page.get(j++));
+            }
+            try {
+                return Charset.forName(name.toString());
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                // Keep looking
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the given range holds the given lowercase ASCII text
+     * at the given index, ignoring ASCII case
+     */
+    private static boolean matches(ByteBuffer page, int at, int to, String text) {
+        if (at + text.length() > to) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            int b = page.get(at + i);
+            if ((b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Enforces the given limits on the rest of the page. If the given
+     * limits are null, throws an IllegalArgumentException.
+     */
+    public void setLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.guard = limits.guard();
+    }
+
+    /**
+     * Returns true for the bytes trimmed by String.trim(), which are all
+     * ASCII
+     */
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    /**
+     * Skips whitespace, as defined by String.trim(). Returns false if the
+     * page is exhausted.
+     */
+    private boolean skipWhitespace() {
+        while (this.pos < this.limit && isBlank(this.buf[this.pos])) {
+            this.pos++;
+        }
+        return this.pos < this.limit;
+    }
+
+    /**
+     * Returns the number of \s bytes starting at the given index.
+     */
+    private int spaceRun(int from, int to) {
+        int i = from;
+        while (i < to && AttributeScanner.isSpace(this.buf[i])) {
+            i++;
+        }
+        return i - from;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given byte at or
+     * after the given index, before the end of the scan, or -1 if there is
+     * none. Runs of text are skipped a word at a time.
+     */
+    private int indexOf(byte b, int from) {
+        return DelimiterScanner.indexOf(this.buf, b, from, this.end);
+    }
+
+    /**
+     * Returns true if the given ASCII text is at the given index, before
+     * the end of the scan.
+     */
+    private boolean startsWith(String text, int at) {
+        if (at + text.length() > this.end) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (this.buf[at + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next token at the cursor without consuming it. Returns its
+     * type and records its bounds, or returns null if no token starts at
+     * the cursor. Under limits, a scan that would have to look further
+     * than the guard's window fails as too long.
+     */
+    private HTMLTagType scan() {
+        skipWhitespace();
+        boolean bounded = this.guard != null && this.limit - this.pos > this.guard.window();
+        this.end = bounded ? this.pos + this.guard.window() : this.limit;
+        HTMLTagType type = scanWindow();
+        if (type == null) {
+            if (bounded) {
+                throw this.guard.tooLong(offset());
+            }
+            return null;
+        }
+        if (this.guard != null) {
+            HTMLTagType checked = type;
+            if (type == HTMLTagType.OPENING && HTMLElementTable.isSelfClosing(nameId(elementName()))) {
+                checked = HTMLTagType.SELF_CLOSING;
+            }
+            this.guard.token(checked, this.tokenEnd - this.pos, offset());
+        }
+        return type;
+    }
+
+    /**
+     * Returns the index of the cursor in the page.
+     */
+    private long offset() {
+        return this.pos - this.start;
+    }
+
+    /**
+     * Returns the exception for a page where no token starts at the cursor.
+     */
+    private HTMLParseException malformed() {
+        return new HTMLParseException(HTMLParseException.Reason.MALFORMED, offset(), "No tag could be read");
+    }
+
+    /**
+     * Returns the exception for a tag at the cursor with nothing but
+     * whitespace inside it, which HTMLTag cannot be built from.
+     */
+    private HTMLParseException unnamed() {
+        return new HTMLParseException(HTMLParseException.Reason.MALFORMED, offset(), "Tag has no element name");
+    }
+
+    private HTMLTagType scanWindow() {
+        if (startsWith("<!--", this.pos)) {
+            return scanComment();
+        } else if (this.pos < this.end && this.buf[this.pos] == '<' && !this.inScript) {
+            return scanTag();
+        } else if (this.inScript) {
+            return scanScriptContent();
+        } else {
+            return scanContent();
+        }
+    }
+
+    /**
+     * Scans an opening, closing or self-closing tag starting with the '<'
+     * at the cursor, the same way HTMLTokenizer does.
+     */
+    private HTMLTagType scanTag() {
+        int from = this.pos + 1;
+        int close = indexOf((byte) '>', from);
+        if (close < 0) {
+            return null;
+        }
+
+        boolean selfClosing = false;
+        int last = close - 1;
+        while (last >= from) {
+            byte b = this.buf[last];
+            if (b != '/' && b != ' ') {
+                break;
+            }
+            if (b == '/') {
+                if (selfClosing) {
+                    return null;
+                }
+                selfClosing = true;
+            }
+            last--;
+        }
+        if (last < from) {
+            return null;
+        }
+
+        boolean closing = false;
+        int first = from + spaceRun(from, close);
+        if (first < close && this.buf[first] == '/' && first + 1 <= last) {
+            closing = true;
+            first = first + 1 + Math.min(spaceRun(first + 1, close), last - first - 1);
+        } else if (first > last) {
+            first = last;
+        }
+
+        this.dataStart = first;
+        this.dataEnd = last + 1;
+        this.tokenEnd = close + 1;
+        if (elementName() == this.dataEnd) {
+            throw unnamed();
+        }
+
+        if (closing) {
+            this.opensScript = false;
+            return HTMLTagType.CLOSING;
+        } else if (selfClosing) {
+            this.opensScript = false;
+            return HTMLTagType.SELF_CLOSING;
+        } else {
+            this.opensScript = elementIs("script");
+            return HTMLTagType.OPENING;
+        }
+    }
+
+    /**
+     * Scans a comment starting with the "<!--" at the cursor.
+     */
+    private HTMLTagType scanComment() {
+        int from = this.pos + 4;
+        int close = indexOf((byte) '>', from);
+        if (close < 0 || close - 3 < from) {
+            return null;
+        }
+        if (this.buf[close - 1] != '-' || this.buf[close - 2] != '-' || this.buf[close - 3] == '/') {
+            return null;
+        }
+
+        this.dataStart = from;
+        this.dataEnd = close - 2;
+        this.tokenEnd = close + 1;
+        this.opensScript = false;
+        return HTMLTagType.COMMENT;
+    }
+
+    /**
+     * Scans content up to, but not including, the next closing tag.
+     */
+    private HTMLTagType scanContent() {
+        int close = -1;
+        int i = indexOf((byte) '<', this.pos);
+        while (i >= 0) {
+            int slash = i + 1 + spaceRun(i + 1, this.end);
+            if (slash < this.end && this.buf[slash] == '/') {
+                if (close < slash + 1) {
+                    close = indexOf((byte) '>', slash + 1);
+                    if (close < 0) {
+                        return null;
+                    }
+                }
+                if (close > slash + 1) {
+                    return content(i);
+                }
+            }
+            i = indexOf((byte) '<', i + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Scans the body of a script up to, but not including, the next
+     * closing script tag.
+     */
+    private HTMLTagType scanScriptContent() {
+        int i = indexOf((byte) '<', this.pos);
+        while (i >= 0) {
+            int p = i + 1 + spaceRun(i + 1, this.end);
+            if (p < this.end && this.buf[p] == '/') {
+                p = p + 1 + spaceRun(p + 1, this.end);
+                if (startsWith("script", p)) {
+                    p = p + 6 + spaceRun(p + 6, this.end);
+                    if (p < this.end && this.buf[p] == '>') {
+                        return content(i);
+                    }
+                }
+            }
+            i = indexOf((byte) '<', i + 1);
+        }
+        return null;
+    }
+
+    private HTMLTagType content(int to) {
+        this.dataStart = this.pos;
+        this.dataEnd = to;
+        this.tokenEnd = to;
+        this.opensScript = false;
+        return HTMLTagType.CONTENT;
+    }
+
+    /**
+     * Returns the start of the element name HTMLTag would read from the
+     * data of the last token scanned, after trimming it. The name runs to
+     * the first \s byte that is not '\r', or to the trimmed end.
+     */
+    private int elementName() {
+        int from = this.dataStart;
+        while (from < this.dataEnd && isBlank(this.buf[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the end of the element name starting at the given index.
+     */
+    private int elementNameEnd(int from) {
+        int to = trimmedEnd(from);
+        int i = from;
+        while (i < to && (this.buf[i] == '\r' || !AttributeScanner.isSpace(this.buf[i]))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimmedEnd(int from) {
+        int to = this.dataEnd;
+        while (to > from && isBlank(this.buf[to - 1])) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * Returns true if the element name of the last token scanned is exactly
+     * the given ASCII name.
+     */
+    private boolean elementIs(String name) {
+        int from = elementName();
+        int to = elementNameEnd(from);
+        int matched = 0;
+        for (int i = from; i < to; i++) {
+            byte b = this.buf[i];
+            if (b == '\r') {
+                continue;
+            }
+            if (matched == name.length() || b != name.charAt(matched)) {
+                return false;
+            }
+            matched++;
+        }
+        return matched == name.length();
+    }
+
+    /**
+     * Returns the slot of the element name starting at the given index in
+     * the cache of decoded names, decoding it first if it is not there.
+     * Only a tag with a name is ever scanned.
+     */
+    private int nameSlot(int from) {
+        int to = elementNameEnd(from);
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + this.buf[i];
+        }
+        // Each name may be in either slot of a pair, and a new name pushes
+        // the first one into the second
+        int slot = (hash * 0x9E3779B9) >>> 25 << 1;
+        if (cached(slot, from, to)) {
+            return slot;
+        }
+        if (cached(slot + 1, from, to)) {
+            return slot + 1;
+        }
+        this.nameBytes[slot + 1] = this.nameBytes[slot];
+        this.names[slot + 1] = this.names[slot];
+        this.nameIds[slot + 1] = this.nameIds[slot];
+        String name = new String(this.buf, from, to - from, this.charset).replace("\r", "");
+        this.nameBytes[slot] = Arrays.copyOfRange(this.buf, from, to);
+        this.names[slot] = name;
+        this.nameIds[slot] = HTMLElementTable.id(name);
+        return slot;
+    }
+
+    private boolean cached(int slot, int from, int to) {
+        byte[] cached = this.nameBytes[slot];
+        return cached != null && Arrays.equals(cached, 0, cached.length, this.buf, from, to);
+    }
+
+    private int nameId(int from) {
+        return this.nameIds[nameSlot(from)];
+    }
+
+    /**
+     * Moves the cursor past the token found by the last call to scan().
+     */
+    private void accept() {
+        this.pos = this.tokenEnd;
+        this.inScript = this.opensScript;
+    }
+
+    /**
+     * Returns the next HTMLTag in the page. If no tag can be read, or the
+     * limits are broken, throws an HTMLParseException.
+     */
+    public HTMLTag next() {
+        HTMLTagType type = scan();
+        if (type == null) {
+            throw malformed();
+        }
+        HTMLTag tag;
+        if (type == HTMLTagType.COMMENT || type == HTMLTagType.CONTENT) {
+            tag = new HTMLTag(type, new HTMLTag.Encoded(this.buf, this.dataStart, this.dataEnd, this.charset));
+        } else {
+            int from = elementName();
+            int slot = nameSlot(from);
+            int id = this.nameIds[slot];
+            if (HTMLElementTable.isSelfClosing(id)) {
+                type = HTMLTagType.SELF_CLOSING;
+            }
+            int attributes = elementNameEnd(from);
+            while (attributes < this.dataEnd && isBlank(this.buf[attributes])) {
+                attributes++;
+            }
+            int to = trimmedEnd(attributes);
+            tag = new HTMLTag(this.names[slot], id, type, attributes == to ? null
+                    : new HTMLTag.Encoded(this.buf, attributes, to, this.charset));
+        }
+        accept();
+        return tag;
+    }
+
+    /**
+     * Returns true if there is another HTMLTag in the page
+     * returns false otherwise.
+     */
+    public boolean hasNext() {
+        return skipWhitespace();
+    }
+
+    /**
+     * Throws UnsupportedOperationException
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
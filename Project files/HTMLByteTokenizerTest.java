@@ -0,0 +1,156 @@
+package edu.caltech.cs2.project03;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks HTMLByteTokenizer against HTMLTokenizer, on every page of
+ * HTMLParserTest, on random UTF-8 and Latin-1 bytes, and on pages whose
+ * charset is sniffed.
+ */
+public class HTMLByteTokenizerTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		for (String page : HTMLParserTest.pages()) {
+			failures += checkBytes(page, HTMLParserTest.tags(HTMLParserMode.REGEX.parser(page)));
+		}
+		failures += checkBytes();
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that the byte tokenizer makes the same tags from the page's
+	 * UTF-8 bytes, from an array, a range of a larger one and a direct
+	 * buffer. Positions are in bytes, so they only match on ASCII pages.
+	 */
+	private static int checkBytes(String page, List<String> expected) {
+		byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length != page.length()) {
+			return HTMLParserTest.check("bytes", page,
+					HTMLParserTest.withoutPosition(HTMLParserTest.tags(new HTMLTokenizer(page))),
+					HTMLParserTest.withoutPosition(HTMLParserTest.tags(new HTMLByteTokenizer(bytes))));
+		}
+		byte[] padded = new byte[bytes.length + 10];
+		Arrays.fill(padded, (byte) '<');
+		System.arraycopy(bytes, 0, padded, 5, bytes.length);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+		return HTMLParserTest.check("bytes", page, expected, new HTMLByteTokenizer(bytes))
+				+ HTMLParserTest.check("bytes/range", page, expected,
+						new HTMLByteTokenizer(padded, 5, bytes.length, StandardCharsets.UTF_8))
+				+ HTMLParserTest.check("bytes/direct", page, expected,
+						new HTMLByteTokenizer(direct, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Checks that pages with multi-byte and malformed UTF-8, and pages in
+	 * other charsets, are tokenized as their decoded text is, that tags
+	 * left as bytes equal decoded ones, and that charsets are sniffed.
+	 */
+	private static int checkBytes() {
+		int failures = 0;
+		String[] pieces = {
+			"<p>", "</p>", "<caf\u00e9 x='\u00e9'>", "</caf\u00e9>", "<!-- \u4e2d\u6587 -->", "\ud83d\ude00",
+			"<script>", "</script>", "< / script >", "\u00e9", "<br/>", " ", "\r", "<a\r b=\u00e9>", "<", ">",
+		};
+		byte[][] malformed = {
+			{(byte) 0xC3}, {(byte) 0xE2, (byte) 0x82}, {(byte) 0xFF}, {(byte) 0x80, (byte) 0x80},
+			{(byte) 0xF0, (byte) 0x9F, (byte) 0x98},
+		};
+		Random random = new Random(22);
+		for (int i = 0; i < 2000; i++) {
+			ByteArrayOutputStream page = new ByteArrayOutputStream();
+			for (int j = random.nextInt(30); j > 0; j--) {
+				byte[] piece = random.nextInt(8) == 0 ? malformed[random.nextInt(malformed.length)]
+						: pieces[random.nextInt(pieces.length)].getBytes(StandardCharsets.UTF_8);
+				page.write(piece, 0, piece.length);
+			}
+			byte[] bytes = page.toByteArray();
+			String text = new String(bytes, StandardCharsets.UTF_8);
+			failures += HTMLParserTest.check("bytes/UTF-8", text,
+					HTMLParserTest.withoutPosition(HTMLParserTest.tags(new HTMLTokenizer(text))),
+					HTMLParserTest.withoutPosition(HTMLParserTest.tags(new HTMLByteTokenizer(bytes))));
+
+			// The same bytes read as Latin-1, where every byte is a char
+			String latin1 = new String(bytes, StandardCharsets.ISO_8859_1);
+			failures += HTMLParserTest.check("bytes/ISO-8859-1", latin1, HTMLParserTest.tags(new HTMLTokenizer(latin1)),
+					new HTMLByteTokenizer(bytes, 0, bytes.length, StandardCharsets.ISO_8859_1));
+		}
+
+		String page = "<p class='caf\u00e9'>na\u00efve</p><!--\u00e9-->";
+		HTMLByteTokenizer bytes = new HTMLByteTokenizer(page.getBytes(StandardCharsets.UTF_8));
+		Iterator<HTMLTag> chars = new HTMLTokenizer(page);
+		while (bytes.hasNext() && chars.hasNext()) {
+			HTMLTag read = bytes.next();
+			HTMLTag decoded = chars.next();
+			if (!read.equals(decoded) || !decoded.equals(read) || read.hashCode() != decoded.hashCode()
+					|| !read.attributes().equals(decoded.attributes())) {
+				System.out.println("Tag left as bytes differs: " + HTMLParserTest.describe(read) + " vs "
+						+ HTMLParserTest.describe(decoded));
+				failures++;
+			}
+		}
+
+		String body = "<p>caf\u00e9</p>";
+		List<String> expected = HTMLParserTest.tags(new HTMLTokenizer(body));
+		Object[][] sniffed = {
+			{"\ufeff" + body, StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+			{"\ufeff" + body, StandardCharsets.UTF_16BE, StandardCharsets.UTF_16BE},
+			{"\ufeff" + body, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16LE},
+			{body, StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+			{"<META CHARSET=\"iso-8859-1\">" + body, StandardCharsets.ISO_8859_1, StandardCharsets.ISO_8859_1},
+			{"<meta http-equiv=Content-Type content='text/html; charset=ISO-8859-1'/>" + body,
+					StandardCharsets.ISO_8859_1, StandardCharsets.ISO_8859_1},
+			{"<meta charset=utf-16>" + body, StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+			{"<meta charset=\"nonsense\"><meta charset=latin1>" + body, StandardCharsets.ISO_8859_1,
+					StandardCharsets.ISO_8859_1},
+			{"<!-- <meta charset=latin1> --><meta charset=utf-8>" + body, StandardCharsets.UTF_8,
+					StandardCharsets.UTF_8},
+			{"<metadata charset=latin1>" + body, StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+			{" ".repeat(HTMLByteTokenizer.PRESCAN_LENGTH) + "<meta charset=latin1>" + body,
+					StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+		};
+		for (Object[] test : sniffed) {
+			String text = (String) test[0];
+			byte[] encoded = text.getBytes((Charset) test[1]);
+			Charset charset = HTMLByteTokenizer.sniff(ByteBuffer.wrap(encoded));
+			if (!charset.equals(test[2])) {
+				System.out.println("Sniffed " + charset + " instead of " + test[2] + " on: " + text);
+				failures++;
+			}
+			List<String> wanted = HTMLParserTest.tags(new HTMLTokenizer(text.replace("\ufeff", "")));
+			failures += HTMLParserTest.check("sniffed/" + test[1], text, wanted,
+					HTMLByteTokenizer.parser(ByteBuffer.wrap(encoded), ParseLimits.DEFAULT));
+			try {
+				String read = HTMLPage.read(HTMLByteTokenizer.reader(new ByteArrayInputStream(encoded)), 0);
+				if (!read.equals(text.replace("\ufeff", ""))) {
+					System.out.println("Sniffing reader read " + read + " instead of: " + text);
+					failures++;
+				}
+			} catch (IOException e) {
+				System.out.println("Sniffing reader failed: " + e);
+				failures++;
+			}
+		}
+		failures += HTMLParserTest.check("sniffed/UTF-16", body, expected,
+				HTMLByteTokenizer.parser(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_16)),
+						ParseLimits.UNLIMITED));
+		if (HTMLByteTokenizer.parser(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), ParseLimits.UNLIMITED)
+				instanceof HTMLTokenizer) {
+			System.out.println("A UTF-8 page was decoded instead of tokenized as bytes");
+			failures++;
+		}
+		return failures;
+	}
+}
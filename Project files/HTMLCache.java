@@ -0,0 +1,436 @@
+package edu.caltech.cs2.project03;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the fixed tags of pages, so that a page whose text has been seen
+ * before is not tokenized and fixed again. Pages are looked up by a
+ * 128-bit hash of their text and its length.
+ *
+ * Fixed pages are kept in memory, least recently used first out, up to a
+ * given number of bytes. If a directory is given, each fixed page is also
+ * written there, and a page missing from memory is read back from it, so
+ * the cache survives restarts. Only the token offsets are written, not the
+ * text, so a page read back from disk is trusted to be the one with the
+ * same hash; pages in memory are also compared with the text.
+ *
+ * Any number of threads may use a cache at once. Two threads that miss on
+ * the same page at the same time both parse it, and the last to finish is
+ * kept.
+ */
+public class HTMLCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x48544b43;
+    private static final int VERSION = 1;
+    private static final HTMLTagType[] TYPES = HTMLTagType.values();
+
+    // Rough size of an entry apart from its text and token arrays
+    private static final int ENTRY_BYTES = 128;
+
+    // Bytes per token, in memory and on disk: a type, an element ID or
+    // name, a start and an end
+    private static final int TOKEN_BYTES = 13;
+
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<Key, TokenBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private volatile ParseLimits limits = ParseLimits.DEFAULT;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder diskErrors = new LongAdder();
+
+    /**
+     * A snapshot of a cache's counters. Hits were found in memory, disk
+     * hits were read back from the directory and misses had to be parsed.
+     * Disk errors count files that could not be read or written.
+     */
+    public record Stats(long hits, long diskHits, long misses, long evictions, long diskErrors,
+                        int entries, long bytes) {
+        /**
+         * Returns the fraction of lookups that did not need a parse
+         */
+        public double hitRate() {
+            long lookups = this.hits + this.diskHits + this.misses;
+            return lookups == 0 ? 0 : (double) (this.hits + this.diskHits) / lookups;
+        }
+    }
+
+    private record Key(long high, long low, int length) {
+        String fileName() {
+            return String.format("%016x%016x-%x.tok", this.high, this.low, this.length);
+        }
+    }
+
+    /**
+     * Creates a cache that keeps up to about the given number of bytes of
+     * fixed pages in memory. If the number is negative, throws an
+     * IllegalArgumentException.
+     */
+    public HTMLCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Creates a cache that keeps up to about the given number of bytes of
+     * fixed pages in memory and every fixed page in the given directory,
+     * which is created if it does not exist. The directory may be null to
+     * keep pages in memory only. If the number is negative, throws an
+     * IllegalArgumentException, and if the directory cannot be created,
+     * an UncheckedIOException.
+     */
+    public HTMLCache(long maxBytes, Path directory) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes is negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("The directory '" + directory + "' is invalid.", e);
+            }
+        }
+    }
+
+    /**
+     * Sets the limits that pages missing from the cache are parsed under
+     */
+    public void setLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.limits = limits;
+    }
+
+    /**
+     * Returns the tags of the given page fixed as HTMLManager.fixHTML
+     * would, in a new buffer that the caller may change. Pages that are
+     * not cached are parsed and fixed, and a page that breaks the limits
+     * throws an HTMLParseException and is not cached. If the page is null,
+     * throws an IllegalArgumentException.
+     */
+    public TokenBuffer tokens(HTMLPage page) {
+        return new TokenBuffer(fixed(page));
+    }
+
+    /**
+     * Returns a new HTMLManager holding the tags of the given page already
+     * fixed, as tokens(page) does.
+     */
+    public HTMLManager manager(HTMLPage page) {
+        return new HTMLManager(fixed(page));
+    }
+
+    /**
+     * Returns the cached, fixed tags of the given page, which must not be
+     * changed, parsing and caching them first if they are missing.
+     */
+    private TokenBuffer fixed(HTMLPage page) {
+        if (page == null || page.unparsedPage == null) {
+            throw new IllegalArgumentException();
+        }
+        String text = page.unparsedPage;
+        Key key = key(text);
+
+        TokenBuffer tokens;
+        synchronized (this.entries) {
+            tokens = this.entries.get(key);
+        }
+        if (tokens != null && tokens.getSource().equals(text)) {
+            this.hits.increment();
+            return tokens;
+        }
+
+        tokens = this.directory == null ? null : load(key, text);
+        if (tokens != null) {
+            this.diskHits.increment();
+        } else {
+            this.misses.increment();
+            HTMLManager manager = new HTMLManager(page.tokens(this.limits));
+            manager.fixHTML();
+            tokens = manager.tokens();
+            tokens.trimToSize();
+            if (this.directory != null) {
+                store(key, tokens);
+            }
+        }
+        put(key, tokens);
+        return tokens;
+    }
+
+    /**
+     * Adds the given tags to memory, then drops the least recently used
+     * pages until the cache is back within its size. Tags bigger than the
+     * whole cache are not kept.
+     */
+    private void put(Key key, TokenBuffer tokens) {
+        long size = weight(tokens);
+        if (size > this.maxBytes) {
+            return;
+        }
+        synchronized (this.entries) {
+            TokenBuffer old = this.entries.put(key, tokens);
+            this.bytes += size;
+            if (old != null) {
+                this.bytes -= weight(old);
+            }
+            Iterator<TokenBuffer> eldest = this.entries.values().iterator();
+            while (this.bytes > this.maxBytes) {
+                this.bytes -= weight(eldest.next());
+                eldest.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Returns about how many bytes the given tags keep alive, counting the
+     * text they point into
+     */
+    private static long weight(TokenBuffer tokens) {
+        return ENTRY_BYTES + 2L * tokens.getSource().length() + (long) TOKEN_BYTES * tokens.size();
+    }
+
+    /**
+     * Drops every page from memory. Pages on disk are kept.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.bytes = 0;
+        }
+    }
+
+    public Stats stats() {
+        int count;
+        long size;
+        synchronized (this.entries) {
+            count = this.entries.size();
+            size = this.bytes;
+        }
+        return new Stats(this.hits.sum(), this.diskHits.sum(), this.misses.sum(), this.evictions.sum(),
+                this.diskErrors.sum(), count, size);
+    }
+
+    /**
+     * Returns the key of the given text: MurmurHash3's 128-bit mix, taken
+     * over the text's chars four at a time so the text need not be
+     * encoded first, with the length.
+     */
+    private static Key key(String text) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        int length = text.length();
+        long h1 = length;
+        long h2 = length;
+
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long k1 = chars(text, i);
+            long k2 = chars(text, i + 4);
+
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = 0; i + j < length; j++) {
+            long c = text.charAt(i + j);
+            if (j < 4) {
+                k1 |= c << (16 * j);
+            } else {
+                k2 |= c << (16 * (j - 4));
+            }
+        }
+        k2 *= c2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= c1;
+        h2 ^= k2;
+        k1 *= c1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= c2;
+        h1 ^= k1;
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = mix(h1);
+        h2 = mix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new Key(h1, h2, length);
+    }
+
+    private static long chars(String text, int i) {
+        return text.charAt(i) | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32 | (long) text.charAt(i + 3) << 48;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Writes the given tags to the file for the given key. The file is
+     * written under another name and then moved into place, so readers
+     * never see half a file.
+     */
+    private void store(Key key, TokenBuffer tokens) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(this.directory, key.fileName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(key, tokens, out);
+            }
+            Files.move(temp, this.directory.resolve(key.fileName()),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            this.diskErrors.increment();
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Nothing more can be done
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the key, then the element names used by the tags, then each
+     * tag as its type, the index of its name and the bounds of its text.
+     * Element IDs are not written since they differ from run to run.
+     */
+    private static void write(Key key, TokenBuffer tokens, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(key.high());
+        out.writeLong(key.low());
+        out.writeInt(key.length());
+
+        Map<Integer, Integer> indexes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.detached(i) != null) {
+                throw new IOException("Tag did not come from the page: " + tokens.get(i));
+            }
+            int id = tokens.elementId(i);
+            if (id > 0 && !indexes.containsKey(id)) {
+                names.add(HTMLElementTable.name(id));
+                indexes.put(id, names.size());
+            }
+        }
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeInt(name.length());
+            out.writeChars(name);
+        }
+
+        out.writeInt(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            int id = tokens.elementId(i);
+            out.writeByte(tokens.type(i).ordinal());
+            out.writeInt(id > 0 ? indexes.get(id) : id);
+            out.writeInt(tokens.start(i));
+            out.writeInt(tokens.end(i));
+        }
+    }
+
+    /**
+     * Reads the tags of the given text from its file, or returns null if
+     * there is none. A file that cannot be read counts as a disk error and
+     * is replaced once the page has been parsed.
+     */
+    private TokenBuffer load(Key key, String text) {
+        try {
+            // Reading the whole file and then decoding it is several times
+            // faster than decoding through a stream
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(this.directory.resolve(key.fileName())));
+            return read(key, text, in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException e) {
+            this.diskErrors.increment();
+            return null;
+        }
+    }
+
+    private static TokenBuffer read(Key key, String text, ByteBuffer in) throws IOException {
+        check(in.getInt() == MAGIC && in.getInt() == VERSION);
+        check(in.getLong() == key.high() && in.getLong() == key.low() && in.getInt() == text.length());
+
+        int[] ids = new int[in.getInt()];
+        check(ids.length <= text.length());
+        for (int n = 0; n < ids.length; n++) {
+            char[] name = new char[in.getInt()];
+            check(name.length > 0 && name.length <= text.length());
+            in.asCharBuffer().get(name);
+            in.position(in.position() + 2 * name.length);
+            ids[n] = HTMLElementTable.id(new String(name));
+        }
+
+        // Fixing at most doubles the tags, and each read takes a char
+        int size = in.getInt();
+        check(size >= 0 && size <= 2L * text.length() && in.remaining() == (long) TOKEN_BYTES * size);
+        TokenBuffer tokens = new TokenBuffer(text);
+        for (int i = 0; i < size; i++) {
+            int type = in.get();
+            int name = in.getInt();
+            int start = in.getInt();
+            int end = in.getInt();
+            check(type >= 0 && type < TYPES.length && name >= HTMLElementTable.UNKNOWN && name <= ids.length);
+            check(start >= 0 && start <= end && end <= text.length());
+            tokens.addToken(TYPES[type], name > 0 ? ids[name - 1] : name, start, end);
+        }
+        tokens.trimToSize();
+        return tokens;
+    }
+
+    private static void check(boolean valid) throws IOException {
+        if (!valid) {
+            throw new IOException("Invalid cache file");
+        }
+    }
+}
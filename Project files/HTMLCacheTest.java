@@ -0,0 +1,146 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks HTMLCache against fixHTML, from memory, from disk and from many
+ * threads at once.
+ */
+public class HTMLCacheTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		try {
+			failures += checkCache();
+		} catch (IOException | InterruptedException e) {
+			System.out.println("Could not use the cache directory: " + e);
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that HTMLCache gives the same tags as fixHTML from memory,
+	 * from disk in a new cache and from many threads at once, and that it
+	 * counts hits, misses and evictions.
+	 */
+	private static int checkCache() throws IOException, InterruptedException {
+		List<String> pages = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		List<String> all = HTMLParserTest.corpus();
+		all.add(CorpusGenerator.repeatedPage(64 * 1024));
+		for (String page : all) {
+			try {
+				HTMLManager manager = new HTMLManager(TokenBuffer.parse(page));
+				manager.fixHTML();
+				expected.add(manager.toString());
+				pages.add(page);
+			} catch (HTMLParseException | IllegalArgumentException e) {
+				// Malformed pages are never cached
+			}
+		}
+
+		Path directory = Files.createTempDirectory("cache");
+		int failures = 0;
+		try {
+			HTMLCache cache = new HTMLCache(HTMLCache.DEFAULT_MAX_BYTES, directory);
+			for (int round = 0; round < 2; round++) {
+				for (int i = 0; i < pages.size(); i++) {
+					failures += checkCached("memory", cache.manager(new HTMLPage(pages.get(i))), expected.get(i));
+				}
+			}
+			failures += checkStats("memory", cache, pages.size(), 0, pages.size());
+
+			// A new cache over the same directory starts with every page on disk
+			HTMLCache reopened = new HTMLCache(HTMLCache.DEFAULT_MAX_BYTES, directory);
+			for (int i = 0; i < pages.size(); i++) {
+				failures += checkCached("disk", reopened.manager(new HTMLPage(new String(pages.get(i)))), expected.get(i));
+			}
+			failures += checkStats("disk", reopened, 0, pages.size(), 0);
+
+			// Corrupt files are parsed again and replaced
+			try (var files = Files.list(directory)) {
+				for (Path file : files.toList()) {
+					Files.write(file, new byte[] {1, 2, 3});
+				}
+			}
+			HTMLCache corrupted = new HTMLCache(HTMLCache.DEFAULT_MAX_BYTES, directory);
+			for (int i = 0; i < pages.size(); i++) {
+				failures += checkCached("corrupt", corrupted.manager(new HTMLPage(pages.get(i))), expected.get(i));
+			}
+			failures += checkStats("corrupt", corrupted, 0, 0, pages.size());
+			if (corrupted.stats().diskErrors() != pages.size()) {
+				System.out.println("HTMLCache/corrupt counted " + corrupted.stats().diskErrors() + " disk errors");
+				failures++;
+			}
+
+			// A cache with room for only small pages evicts as it goes
+			HTMLCache small = new HTMLCache(1024);
+			for (int i = 0; i < pages.size(); i++) {
+				failures += checkCached("small", small.manager(new HTMLPage(pages.get(i))), expected.get(i));
+			}
+			HTMLCache.Stats stats = small.stats();
+			if (stats.bytes() > 1024 || stats.evictions() == 0 || stats.entries() + stats.evictions() >= pages.size()) {
+				System.out.println("HTMLCache/small has " + stats);
+				failures++;
+			}
+
+			HTMLCache shared = new HTMLCache(16 * 1024, directory);
+			int[] threadFailures = new int[4];
+			Thread[] threads = new Thread[threadFailures.length];
+			for (int t = 0; t < threads.length; t++) {
+				int thread = t;
+				threads[t] = new Thread(() -> {
+					Random random = new Random(thread);
+					for (int n = 0; n < 500; n++) {
+						int i = random.nextInt(pages.size());
+						threadFailures[thread] += checkCached("threads", shared.manager(new HTMLPage(pages.get(i))), expected.get(i));
+					}
+				});
+				threads[t].start();
+			}
+			for (int t = 0; t < threads.length; t++) {
+				threads[t].join();
+				failures += threadFailures[t];
+			}
+			stats = shared.stats();
+			if (stats.hits() + stats.diskHits() + stats.misses() != 500L * threads.length || stats.bytes() > 16 * 1024) {
+				System.out.println("HTMLCache/threads has " + stats);
+				failures++;
+			}
+		} finally {
+			try (var files = Files.list(directory)) {
+				for (Path file : files.toList()) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+		return failures;
+	}
+
+	private static int checkCached(String name, HTMLManager manager, String expected) {
+		if (!manager.toString().equals(expected)) {
+			System.out.println("HTMLCache/" + name + " differs on: " + expected);
+			return 1;
+		}
+		return 0;
+	}
+
+	private static int checkStats(String name, HTMLCache cache, long hits, long diskHits, long misses) {
+		HTMLCache.Stats stats = cache.stats();
+		if (stats.hits() != hits || stats.diskHits() != diskHits || stats.misses() != misses) {
+			System.out.println("HTMLCache/" + name + " has " + stats);
+			return 1;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,34 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/** enumerates the ways a stream of tags can be written out */
+public enum HTMLCommand {
+    /** the tags as parsed, one per line */
+    TOKENS,
+    /** the tags repaired by HTMLFixer, as a page */
+    FIX,
+    /** the tags repaired and indented like HTMLManager.toString */
+    PRETTY;
+
+    /**
+     * Writes the given tags to the given output, reading them one at a
+     * time so that only the tags still open are held in memory
+     */
+    public void write(Iterator<HTMLTag> tags, Appendable out) throws IOException {
+        if (this == TOKENS) {
+            while (tags.hasNext()) {
+                tags.next().appendTo(out);
+                out.append('\n');
+            }
+        } else if (this == FIX) {
+            Iterator<HTMLTag> fixed = new HTMLFixer(tags);
+            while (fixed.hasNext()) {
+                fixed.next().appendTo(out);
+            }
+        } else {
+            HTMLManager.prettyPrint(new HTMLFixer(tags), out);
+        }
+    }
+}
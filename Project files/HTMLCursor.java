@@ -0,0 +1,302 @@
+package edu.caltech.cs2.project03;
+
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A pull parser that moves over the tokens of a page one at a time without
+ * building an HTMLTag for any of them. nextToken() moves to the next token
+ * and returns its type; the accessors then read that token straight from
+ * the page's text.
+ *
+ * Names, text and attributes are returned as CharSequence views into the
+ * page. Each accessor reuses one view, which is only valid until the next
+ * call to that accessor or to nextToken(); call toString() on a view to
+ * keep it. Once the cursor has seen a page's element names and its
+ * largest tag, moving and reading allocate nothing.
+ *
+ * The tokens are exactly the tags HTMLTokenizer makes: the same types,
+ * with void elements as SELF_CLOSING, the same element names and text,
+ * and the same attributes.
+ */
+public class HTMLCursor {
+    private final HTMLTokenizer tokenizer;
+    private HTMLTagType type;
+
+    private final View name = new View();
+    private final View text = new View();
+    private final View key = new View();
+    private final View value = new View();
+
+    // Name text with '\r' taken out, for the rare name that has one
+    private char[] nameScratch = new char[16];
+
+    // The attributes of the current token, found when first asked for.
+    // valueStarts holds -1 for attributes without a value.
+    private boolean attributesFound;
+    private char[] attributeText;
+    private char[] attributeScratch = new char[64];
+    private int attributeCount;
+    private int[] keyStarts = new int[8];
+    private int[] keyEnds = new int[8];
+    private int[] valueStarts = new int[8];
+    private int[] valueEnds = new int[8];
+    // Made once, so that splitting does not allocate
+    private final AttributeScanner.Sink sink = this::add;
+
+    /**
+     * A window onto a range of chars, which is moved rather than replaced
+     */
+    private static final class View implements CharSequence {
+        private char[] chars;
+        private int from;
+        private int to;
+
+        View set(char[] chars, int from, int to) {
+            this.chars = chars;
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        public int length() {
+            return this.to - this.from;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= this.to - this.from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return this.chars[this.from + index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        public String toString() {
+            return new String(this.chars, this.from, this.to - this.from);
+        }
+    }
+
+    /**
+     * Creates a cursor over the given source String
+     */
+    public HTMLCursor(String page) {
+        this(new HTMLTokenizer(page));
+    }
+
+    /**
+     * Creates a cursor over the given source String that throws an
+     * HTMLParseException as soon as the page breaks the given limits. If
+     * the limits are null, throws an IllegalArgumentException.
+     */
+    public HTMLCursor(String page, ParseLimits limits) {
+        this(new HTMLTokenizer(page));
+        this.tokenizer.setLimits(limits);
+    }
+
+    /**
+     * Creates a cursor that reads its source from the given Reader
+     */
+    public HTMLCursor(Reader source) {
+        this(new HTMLTokenizer(source));
+    }
+
+    private HTMLCursor(HTMLTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Moves to the next token and returns its type, or returns null, and
+     * stays there, at the end of the page. If no token can be read, a tag
+     * has no element name or the limits are broken, throws an
+     * HTMLParseException.
+     */
+    public HTMLTagType nextToken() {
+        this.attributesFound = false;
+        this.type = null;
+        if (!this.tokenizer.hasNext()) {
+            return null;
+        }
+        HTMLTagType next = this.tokenizer.skip();
+        // As in HTMLTag, every tag of a void element is self-closing
+        if (next != HTMLTagType.COMMENT && next != HTMLTagType.CONTENT
+                && HTMLElementTable.isSelfClosing(this.tokenizer.elementId())) {
+            next = HTMLTagType.SELF_CLOSING;
+        }
+        this.type = next;
+        return next;
+    }
+
+    /**
+     * Returns the type of the current token, or null before the first
+     * token and at the end
+     */
+    public HTMLTagType type() {
+        return this.type;
+    }
+
+    private boolean hasElement() {
+        return this.type != null && this.type != HTMLTagType.COMMENT && this.type != HTMLTagType.CONTENT;
+    }
+
+    /**
+     * Returns the HTMLElementTable ID of the current token's element, or
+     * HTMLElementTable.NONE for comments, content and no token
+     */
+    public int elementId() {
+        return hasElement() ? this.tokenizer.elementId() : HTMLElementTable.NONE;
+    }
+
+    /**
+     * Returns the element name of the current token as written, as
+     * HTMLTag.getElement() would, or null for comments, content and no
+     * token
+     */
+    public CharSequence elementName() {
+        if (!hasElement()) {
+            return null;
+        }
+        char[] buf = this.tokenizer.buffer();
+        int from = this.tokenizer.elementStart();
+        int to = this.tokenizer.elementEnd(from);
+        int returns = countReturns(buf, from, to);
+        if (returns > 0) {
+            return this.name.set(withoutReturns(buf, from, to), 0, to - from - returns);
+        }
+        return this.name.set(buf, from, to);
+    }
+
+    private static int countReturns(char[] buf, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\r') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the given range into the name scratch array without any '\r'
+     */
+    private char[] withoutReturns(char[] buf, int from, int to) {
+        if (to - from > this.nameScratch.length) {
+            this.nameScratch = new char[Math.max(to - from, 2 * this.nameScratch.length)];
+        }
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            if (buf[i] != '\r') {
+                this.nameScratch[length++] = buf[i];
+            }
+        }
+        return this.nameScratch;
+    }
+
+    /**
+     * Returns the text of the current comment or content, or null for
+     * other tokens
+     */
+    public CharSequence text() {
+        if (this.type != HTMLTagType.COMMENT && this.type != HTMLTagType.CONTENT) {
+            return null;
+        }
+        return this.text.set(this.tokenizer.buffer(), this.tokenizer.dataStart(), this.tokenizer.dataEnd());
+    }
+
+    /**
+     * Returns the number of attributes of the current token, which is 0
+     * for comments, content and no token
+     */
+    public int attributeCount() {
+        findAttributes();
+        return this.attributeCount;
+    }
+
+    /**
+     * Returns the name of the attribute at the given index. If there is no
+     * such attribute, throws an IndexOutOfBoundsException.
+     */
+    public CharSequence attributeName(int i) {
+        findAttributes();
+        if (i < 0 || i >= this.attributeCount) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return this.key.set(this.attributeText, this.keyStarts[i], this.keyEnds[i]);
+    }
+
+    /**
+     * Returns the value of the attribute at the given index, or null if it
+     * was written without one. If there is no such attribute, throws an
+     * IndexOutOfBoundsException.
+     */
+    public CharSequence attributeValue(int i) {
+        findAttributes();
+        if (i < 0 || i >= this.attributeCount) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        if (this.valueStarts[i] < 0) {
+            return null;
+        }
+        return this.value.set(this.attributeText, this.valueStarts[i], this.valueEnds[i]);
+    }
+
+    /**
+     * Splits the attribute text of the current token, if that has not been
+     * done yet, exactly as HTMLTag does: the text after the name, trimmed,
+     * without any '\r' and split by AttributeScanner
+     */
+    private void findAttributes() {
+        if (this.attributesFound) {
+            return;
+        }
+        this.attributesFound = true;
+        this.attributeCount = 0;
+        if (!hasElement()) {
+            return;
+        }
+
+        char[] buf = this.tokenizer.buffer();
+        int from = this.tokenizer.elementEnd(this.tokenizer.elementStart());
+        int to = this.tokenizer.dataEnd();
+        while (from < to && buf[from] <= ' ') {
+            from++;
+        }
+        while (to > from && buf[to - 1] <= ' ') {
+            to--;
+        }
+        int returns = countReturns(buf, from, to);
+        if (returns > 0) {
+            if (to - from > this.attributeScratch.length) {
+                this.attributeScratch = new char[Math.max(to - from, 2 * this.attributeScratch.length)];
+            }
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                if (buf[i] != '\r') {
+                    this.attributeScratch[length++] = buf[i];
+                }
+            }
+            buf = this.attributeScratch;
+            from = 0;
+            to = length;
+        }
+        this.attributeText = buf;
+        AttributeScanner.split(buf, from, to, this.sink);
+    }
+
+    private void add(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+        int i = this.attributeCount;
+        if (i == this.keyStarts.length) {
+            this.keyStarts = Arrays.copyOf(this.keyStarts, 2 * i);
+            this.keyEnds = Arrays.copyOf(this.keyEnds, 2 * i);
+            this.valueStarts = Arrays.copyOf(this.valueStarts, 2 * i);
+            this.valueEnds = Arrays.copyOf(this.valueEnds, 2 * i);
+        }
+        this.keyStarts[i] = keyStart;
+        this.keyEnds[i] = keyEnd;
+        this.valueStarts[i] = valueStart;
+        this.valueEnds[i] = valueEnd;
+        this.attributeCount++;
+    }
+}
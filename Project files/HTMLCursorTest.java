@@ -0,0 +1,175 @@
+package edu.caltech.cs2.project03;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that HTMLCursor reads the same tokens as HTMLTokenizer, and that
+ * it allocates nothing per token.
+ */
+public class HTMLCursorTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		for (String page : HTMLParserTest.pages()) {
+			failures += checkCursor(page, new HTMLCursor(page));
+		}
+		failures += checkCursor();
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that the cursor moves over the same tokens HTMLTokenizer makes
+	 * tags for, reading the same names, text and attributes, and fails in
+	 * the same place.
+	 */
+	private static int checkCursor(String page, HTMLCursor cursor) {
+		return checkCursor(page, ParseLimits.UNLIMITED, cursor);
+	}
+
+	private static int checkCursor(String page, ParseLimits limits, HTMLCursor cursor) {
+		List<String> expected = new ArrayList<>();
+		try {
+			HTMLTokenizer tags = new HTMLTokenizer(page);
+			tags.setLimits(limits);
+			while (tags.hasNext()) {
+				expected.add(parts(tags.next()));
+			}
+		} catch (HTMLParseException e) {
+			expected.add(e.getReason() + " at " + e.getPosition());
+		} catch (RuntimeException e) {
+			expected.add(e.getClass().getSimpleName());
+		}
+
+		List<String> actual = new ArrayList<>();
+		try {
+			while (cursor.nextToken() != null) {
+				actual.add(parts(cursor));
+			}
+			if (cursor.nextToken() != null || cursor.type() != null) {
+				actual.add("moved past the end");
+			}
+		} catch (HTMLParseException e) {
+			actual.add(e.getReason() + " at " + e.getPosition());
+		} catch (RuntimeException e) {
+			actual.add(e.getClass().getSimpleName());
+		}
+		return HTMLParserTest.check("cursor", page, expected, actual);
+	}
+
+	/**
+	 * Describes the type, element, text and attributes of the given tag
+	 */
+	private static String parts(HTMLTag tag) {
+		StringBuilder result = new StringBuilder(tag.getType().toString());
+		if (tag.getElement() != null) {
+			result.append(" <").append(tag.getElement()).append("> ")
+					.append(HTMLElementTable.name(tag.getElementId()));
+		} else {
+			result.append(" \"").append(tag.getContents()).append('"');
+		}
+		for (HTMLTag.Attribute attribute : tag.attributes()) {
+			result.append(' ').append(attribute.key()).append('=').append(attribute.value());
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Describes the token at the cursor the way parts(HTMLTag) describes
+	 * the same tag
+	 */
+	private static String parts(HTMLCursor cursor) {
+		StringBuilder result = new StringBuilder(cursor.type().toString());
+		if (cursor.elementName() != null) {
+			result.append(" <").append(cursor.elementName()).append("> ")
+					.append(HTMLElementTable.name(cursor.elementId()));
+		} else {
+			result.append(" \"").append(cursor.text()).append('"');
+		}
+		for (int i = 0; i < cursor.attributeCount(); i++) {
+			result.append(' ').append(cursor.attributeName(i)).append('=').append(cursor.attributeValue(i));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Checks the cursor on names and attributes with '\r' in them, on
+	 * streams and under limits, and that once warmed up it allocates
+	 * nothing per token.
+	 */
+	private static int checkCursor() {
+		int failures = 0;
+		String[] pages = {
+			"<a\r\rb c\r=\r'x\ry' d = e f>t</a\r>",
+			"<p  class = \" x\"  hidden  id='y>z'/>",
+			"<img src=a.png alt='unclosed>",
+			"<!-- c --><script>a < b</script>",
+		};
+		for (String page : pages) {
+			failures += checkCursor(page, new HTMLCursor(page));
+			failures += checkCursor(page, new HTMLCursor(new StringReader(page)));
+		}
+		String deep = "<a>".repeat(10);
+		ParseLimits shallow = new ParseLimits(16, 3, 100, 0);
+		failures += checkCursor(deep, shallow, new HTMLCursor(deep, shallow));
+
+		HTMLCursor cursor = new HTMLCursor("<p id=x>");
+		try {
+			cursor.nextToken();
+			cursor.attributeName(1);
+			System.out.println("The cursor read an attribute past the last one");
+			failures++;
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean allocations) {
+			String page = CorpusGenerator.repeatedPage(256 * 1024);
+			long tokens = 0;
+			long allocated = 0;
+			for (int run = 0; run < 4; run++) {
+				HTMLCursor warm = new HTMLCursor(page);
+				while (warm.nextToken() != null) {
+					readAll(warm);
+				}
+				// The cursor, its arrays and its name cache are made before
+				// counting starts
+				HTMLCursor counted = new HTMLCursor(page);
+				counted.nextToken();
+				readAll(counted);
+				long before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+				tokens = 0;
+				while (counted.nextToken() != null) {
+					readAll(counted);
+					tokens++;
+				}
+				allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+			}
+			if (allocated > 1024) {
+				System.out.println("The cursor allocated " + allocated + " bytes over " + tokens + " tokens");
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Reads every part of the token at the cursor without keeping any
+	 */
+	private static int readAll(HTMLCursor cursor) {
+		int sum = cursor.elementId() + cursor.type().ordinal();
+		CharSequence text = cursor.elementName() != null ? cursor.elementName() : cursor.text();
+		sum += text.length() > 0 ? text.charAt(0) : 0;
+		for (int i = 0; i < cursor.attributeCount(); i++) {
+			sum += cursor.attributeName(i).length();
+			CharSequence value = cursor.attributeValue(i);
+			sum += value == null ? 0 : value.length();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,145 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A global, thread-safe table of element names. Every name is case-folded
+ * and given a small int ID, so that tags can compare elements by ID
+ * instead of with equalsIgnoreCase. The HTML5 elements are in the table
+ * from the start.
+ */
+public final class HTMLElementTable {
+    /** The ID of the missing element of comments and content */
+    public static final int NONE = 0;
+
+    /** The ID given to new names once the table is full */
+    public static final int UNKNOWN = -1;
+
+    /** The most names the table will hold, so hostile pages cannot grow it forever */
+    public static final int MAX_SIZE = 1 << 16;
+
+    private static final String[] HTML5_ELEMENTS = {
+        "a", "abbr", "address", "area", "article", "aside", "audio", "b", "base",
+        "bdi", "bdo", "blockquote", "body", "br", "button", "canvas", "caption",
+        "cite", "code", "col", "colgroup", "data", "datalist", "dd", "del",
+        "details", "dfn", "dialog", "div", "dl", "dt", "em", "embed", "fieldset",
+        "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5",
+        "h6", "head", "header", "hgroup", "hr", "html", "i", "iframe", "img",
+        "input", "ins", "kbd", "label", "legend", "li", "link", "main", "map",
+        "mark", "menu", "meta", "meter", "nav", "noscript", "object", "ol",
+        "optgroup", "option", "output", "p", "param", "picture", "pre",
+        "progress", "q", "rp", "rt", "ruby", "s", "samp", "script", "search",
+        "section", "select", "slot", "small", "source", "span", "strong",
+        "style", "sub", "summary", "sup", "table", "tbody", "td", "template",
+        "textarea", "tfoot", "th", "thead", "time", "title", "tr", "track",
+        "u", "ul", "var", "video", "wbr"
+    };
+
+    private static final String[] SELF_CLOSING_TAGS = {
+        "!doctype", "area", "base", "basefont", "br",
+        "col", "command", "embed", "hr", "img", "input",
+        "keygen", "link", "meta", "param", "wbr", "track", "?xml"
+    };
+
+    // Maps folded names, and any other spellings seen, to their IDs
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[256];
+    private static int size = 1;
+
+    private static final boolean[] SELF_CLOSING;
+
+    static {
+        for (String name : HTML5_ELEMENTS) {
+            id(name);
+        }
+        for (String name : SELF_CLOSING_TAGS) {
+            id(name);
+        }
+        SELF_CLOSING = new boolean[size];
+        for (String name : SELF_CLOSING_TAGS) {
+            SELF_CLOSING[id(name)] = true;
+        }
+    }
+
+    private HTMLElementTable() {
+    }
+
+    /**
+     * Returns the ID of the given element name, adding it to the table if
+     * it is new. Names that differ only in case share an ID. Returns NONE
+     * for null, and UNKNOWN for a new name once the table is full.
+     */
+    public static int id(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        return register(name);
+    }
+
+    private static synchronized int register(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        String folded = fold(name);
+        id = IDS.get(folded);
+        if (id == null) {
+            if (size >= MAX_SIZE) {
+                return UNKNOWN;
+            }
+            id = size;
+            String[] table = names;
+            if (size == table.length) {
+                table = Arrays.copyOf(table, 2 * size);
+            }
+            table[size++] = folded;
+            names = table;
+            IDS.put(folded, id);
+        }
+
+        // Remember this spelling so the next lookup of it skips the lock
+        if (!name.equals(folded) && IDS.size() < 2 * MAX_SIZE) {
+            IDS.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the case-folded name with the given ID, or null for NONE,
+     * UNKNOWN and IDs that have not been given out.
+     */
+    public static String name(int id) {
+        String[] table = names;
+        return id > 0 && id < table.length ? table[id] : null;
+    }
+
+    /**
+     * Returns true if the element with the given ID never needs a closing
+     * tag, as is the case for br and img.
+     */
+    public static boolean isSelfClosing(int id) {
+        return id > 0 && id < SELF_CLOSING.length && SELF_CLOSING[id];
+    }
+
+    /**
+     * Folds the case of a character so that two characters fold to the same
+     * value exactly when String.equalsIgnoreCase considers them equal.
+     */
+    public static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static String fold(String name) {
+        char[] folded = new char[name.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(name.charAt(i));
+        }
+        return new String(folded);
+    }
+}
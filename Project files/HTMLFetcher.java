@@ -0,0 +1,358 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches many pages at once with HttpClient and parses each one while it
+ * downloads. The body of each response is fed to an HTMLTokenizer as it
+ * arrives, so a page is never held whole and parsing overlaps the
+ * transfer.
+ *
+ * At most a given number of requests are in flight at once, and at most
+ * a given number per host. Requests over either limit wait in line, and
+ * hosts take turns as requests finish. Each request must finish, body
+ * and all, within a timeout. Responses may be gzip-encoded.
+ *
+ * A page is decoded in the charset its byte order mark gives, or else the
+ * one its Content-Type header names, or else the one HTMLByteTokenizer
+ * sniffs from its first bytes. A page whose header names no charset is
+ * not parsed until those bytes have arrived.
+ *
+ * Reading a body blocks, so each request in flight holds a thread while
+ * it is parsed: a virtual thread where the JDK has them, and otherwise a
+ * thread from a cached pool.
+ */
+public class HTMLFetcher implements AutoCloseable {
+    public static final int DEFAULT_MAX_REQUESTS = 32;
+    public static final int DEFAULT_MAX_PER_HOST = 4;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Reads the tags of a fetched page as they arrive, and returns what
+     * was made of them
+     */
+    @FunctionalInterface
+    public interface PageHandler<T> {
+        T handle(URI uri, Iterator<HTMLTag> tags) throws IOException;
+    }
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final int maxRequests;
+    private final int maxPerHost;
+    private final Duration timeout;
+    private final ParseLimits limits;
+
+    // Guarded by this
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final ArrayDeque<Host> ready = new ArrayDeque<>();
+    private int active;
+    private boolean closed;
+
+    /**
+     * The requests waiting for and holding a host's permits. A host is in
+     * the ready line when it has a request waiting and a permit free.
+     */
+    private static class Host {
+        final ArrayDeque<Fetch<?>> waiting = new ArrayDeque<>();
+        int active;
+        boolean ready;
+    }
+
+    private record Fetch<T>(URI uri, PageHandler<T> handler, CompletableFuture<T> result) {
+    }
+
+    /**
+     * Creates a fetcher with the default limits, which parses pages under
+     * ParseLimits.DEFAULT
+     */
+    public HTMLFetcher() {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_PER_HOST, DEFAULT_TIMEOUT, ParseLimits.DEFAULT);
+    }
+
+    /**
+     * Creates a fetcher that keeps at most the given numbers of requests in
+     * flight in all and to each host, gives each request the given time to
+     * finish, and parses pages under the given limits. If a number is not
+     * positive, the timeout is not positive or either is null, throws an
+     * IllegalArgumentException.
+     */
+    public HTMLFetcher(int maxRequests, int maxPerHost, Duration timeout, ParseLimits limits) {
+        if (maxRequests < 1 || maxPerHost < 1 || timeout == null || timeout.isNegative() || timeout.isZero()
+                || limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.maxRequests = maxRequests;
+        this.maxPerHost = maxPerHost;
+        this.timeout = timeout;
+        this.limits = limits;
+        this.executor = HTMLServer.newRequestExecutor();
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Fetches and parses the page at the given URI, and returns its tags.
+     */
+    public CompletableFuture<Queue<HTMLTag>> fetch(URI uri) {
+        return fetch(uri, (page, tags) -> {
+            Queue<HTMLTag> result = new Queue<>();
+            while (tags.hasNext()) {
+                result.enqueue(tags.next());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Fetches the page at the given URI and passes its tags to the given
+     * handler as they are parsed. The returned future completes with what
+     * the handler returns, or exceptionally with an IOException if the
+     * request fails, times out or does not get status 200, or with an
+     * HTMLParseException if the page breaks the limits. If the fetcher is
+     * closed, throws an IllegalStateException, and if the URI is not an
+     * http or https URL or either argument is null, an
+     * IllegalArgumentException.
+     */
+    public <T> CompletableFuture<T> fetch(URI uri, PageHandler<T> handler) {
+        if (uri == null || handler == null || uri.getHost() == null
+                || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalArgumentException("Not an http or https URL: " + uri);
+        }
+        Fetch<T> fetch = new Fetch<>(uri, handler, new CompletableFuture<>());
+        List<Fetch<?>> start;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("The fetcher is closed.");
+            }
+            Host host = this.hosts.computeIfAbsent(uri.getHost().toLowerCase(), name -> new Host());
+            host.waiting.add(fetch);
+            markReady(host);
+            start = takeReady();
+        }
+        start.forEach(this::start);
+        return fetch.result();
+    }
+
+    /**
+     * Puts the given host in the ready line if it should be there
+     */
+    private void markReady(Host host) {
+        if (!host.ready && !host.waiting.isEmpty() && host.active < this.maxPerHost) {
+            host.ready = true;
+            this.ready.add(host);
+        }
+    }
+
+    /**
+     * Takes permits for as many waiting requests as the limits allow, one
+     * per ready host in turn, and returns them to be started
+     */
+    private List<Fetch<?>> takeReady() {
+        List<Fetch<?>> start = new ArrayList<>();
+        while (this.active < this.maxRequests && !this.ready.isEmpty()) {
+            Host host = this.ready.poll();
+            host.ready = false;
+            start.add(host.waiting.poll());
+            host.active++;
+            this.active++;
+            markReady(host);
+        }
+        return start;
+    }
+
+    /**
+     * Gives back the permits of a finished request to the given host and
+     * starts whatever can run now
+     */
+    private void release(String name) {
+        List<Fetch<?>> start;
+        synchronized (this) {
+            Host host = this.hosts.get(name);
+            host.active--;
+            this.active--;
+            if (host.active == 0 && host.waiting.isEmpty()) {
+                this.hosts.remove(name);
+            } else {
+                markReady(host);
+            }
+            start = takeReady();
+            if (this.closed && this.active == 0) {
+                this.executor.shutdown();
+            }
+        }
+        start.forEach(this::start);
+    }
+
+    /**
+     * Sends the request for the given fetch, which holds permits, and
+     * parses the response on a thread of its own once its headers arrive
+     */
+    private <T> void start(Fetch<T> fetch) {
+        long deadline = System.nanoTime() + this.timeout.toNanos();
+        CompletableFuture<T> parsed;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(fetch.uri())
+                    .timeout(this.timeout)
+                    .header("Accept-Encoding", "gzip")
+                    .GET()
+                    .build();
+            parsed = this.client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApplyAsync(response -> parse(fetch, response, deadline), this.executor);
+        } catch (RuntimeException e) {
+            parsed = CompletableFuture.failedFuture(e);
+        }
+        parsed.whenComplete((result, failure) -> {
+            release(fetch.uri().getHost().toLowerCase());
+            if (failure != null) {
+                fetch.result().completeExceptionally(unwrap(failure));
+            } else {
+                fetch.result().complete(result);
+            }
+        });
+    }
+
+    /**
+     * Returns the failure inside the wrappers added by CompletableFuture
+     * and by the tokenizer's reads
+     */
+    private static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof UncheckedIOException)
+                && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Reads the body of the given response through the tokenizer into the
+     * handler. If the body is still arriving at the deadline, it is closed,
+     * which fails the read.
+     */
+    private <T> T parse(Fetch<T> fetch, HttpResponse<InputStream> response, long deadline) {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP status " + response.statusCode() + " for " + fetch.uri());
+            }
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            CompletableFuture.runAsync(() -> {
+                if (!done.isDone()) {
+                    close(body);
+                }
+            }, CompletableFuture.delayedExecutor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            try {
+                HTMLTokenizer tags = new HTMLTokenizer(HTMLByteTokenizer.reader(decode(response, body),
+                        charset(response)));
+                tags.setLimits(this.limits);
+                return fetch.handler().handle(fetch.uri(), tags);
+            } catch (RuntimeException e) {
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new IOException("Timed out reading " + fetch.uri(), e);
+                }
+                throw e;
+            } finally {
+                done.complete(null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the given body decoded as its Content-Encoding says. If the
+     * encoding is not gzip or identity, throws an IOException.
+     */
+    private static InputStream decode(HttpResponse<InputStream> response, InputStream body) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity").trim();
+        if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            return new GZIPInputStream(body, HTMLTokenizer.DEFAULT_BUFFER_SIZE);
+        }
+        if (!encoding.equalsIgnoreCase("identity")) {
+            throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the supported charset named by the charset parameter of the
+     * given response's Content-Type, or null if there is none
+     */
+    private static Charset charset(HttpResponse<InputStream> response) {
+        String type = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : type.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0 || !parameter.substring(0, equals).trim().equalsIgnoreCase("charset")) {
+                continue;
+            }
+            String name = parameter.substring(equals + 1).trim();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            try {
+                return Charset.forName(name);
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static void close(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // The read that was cut off reports the failure
+        }
+    }
+
+    /**
+     * Stops taking requests. Requests still waiting are cancelled, and
+     * those in flight are left to finish, after which the threads are
+     * stopped.
+     */
+    @Override
+    public void close() {
+        List<Fetch<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (Host host : this.hosts.values()) {
+                cancelled.addAll(host.waiting);
+                host.waiting.clear();
+            }
+            this.ready.clear();
+            if (this.active == 0) {
+                this.executor.shutdown();
+            }
+        }
+        for (Fetch<?> fetch : cancelled) {
+            fetch.result().completeExceptionally(new CancellationException("The fetcher was closed."));
+        }
+    }
+}
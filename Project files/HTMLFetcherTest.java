@@ -0,0 +1,229 @@
+package edu.caltech.cs2.project03;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks HTMLFetcher against pages served from a local server.
+ */
+public class HTMLFetcherTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		HTMLServer.useNoDelay();
+		try {
+			failures += checkFetcher();
+		} catch (IOException | InterruptedException e) {
+			System.out.println("Could not serve pages to the fetcher: " + e);
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Fetches pages from a local server on two host names, some of them
+	 * gzipped, and checks their tags and that the limits on requests in
+	 * flight held. Then checks that a page is parsed while it is still
+	 * arriving, and that slow pages and error statuses fail.
+	 */
+	private static int checkFetcher() throws IOException, InterruptedException {
+		String[] pages = new String[8];
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = CorpusGenerator.generate(CorpusProfile.MIXED, i, 32 * 1024);
+		}
+		Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+		Map<String, Integer> maxInFlight = new ConcurrentHashMap<>();
+		AtomicInteger total = new AtomicInteger();
+		AtomicInteger maxTotal = new AtomicInteger();
+		CountDownLatch firstTags = new CountDownLatch(1);
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		ExecutorService serverThreads = Executors.newCachedThreadPool();
+		server.setExecutor(serverThreads);
+		server.createContext("/page/", exchange -> {
+			String host = exchange.getRequestHeaders().getFirst("Host");
+			maxInFlight.merge(host, inFlight.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet(), Math::max);
+			maxTotal.accumulateAndGet(total.incrementAndGet(), Math::max);
+			try {
+				String path = exchange.getRequestURI().getPath();
+				byte[] body = pages[Integer.parseInt(path.substring(path.lastIndexOf('/') + 1))]
+						.getBytes(StandardCharsets.UTF_8);
+				String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (accept != null && accept.contains("gzip") && body.length % 2 == 0) {
+					ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+					try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+						out.write(body);
+					}
+					body = gzipped.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				Thread.sleep(20);
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.get(host).decrementAndGet();
+				total.decrementAndGet();
+				exchange.close();
+			}
+		});
+		server.createContext("/stream", exchange -> {
+			// Without a charset the fetcher would wait for more of the page
+			// to sniff one from
+			exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			exchange.getResponseBody().write("<p>first</p>".getBytes(StandardCharsets.UTF_8));
+			exchange.getResponseBody().flush();
+			try {
+				firstTags.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.getResponseBody().write("<p>second</p>".getBytes(StandardCharsets.UTF_8));
+			exchange.close();
+		});
+		server.createContext("/slow", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			exchange.getResponseBody().write("<p>".getBytes(StandardCharsets.UTF_8));
+			exchange.getResponseBody().flush();
+			try {
+				Thread.sleep(3000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		// A Latin-1 page, with its charset in the header or a meta tag
+		String latin = "<p title=\"caf\u00e9\">na\u00efve</p>";
+		server.createContext("/latin", exchange -> {
+			byte[] body = latin.getBytes(StandardCharsets.ISO_8859_1);
+			exchange.getResponseHeaders().set("Content-Type", "text/html; charset=\"ISO-8859-1\"");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.createContext("/meta", exchange -> {
+			byte[] body = ("<meta charset=\"iso-8859-1\">" + latin).getBytes(StandardCharsets.ISO_8859_1);
+			exchange.getResponseHeaders().set("Content-Type", "text/html");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.createContext("/missing", exchange -> {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		server.start();
+
+		int failures = 0;
+		int port = server.getAddress().getPort();
+		HTMLFetcher fetcher = new HTMLFetcher(3, 2, Duration.ofSeconds(1), ParseLimits.DEFAULT);
+		try {
+			List<CompletableFuture<Queue<HTMLTag>>> fetched = new ArrayList<>();
+			for (int round = 0; round < 2; round++) {
+				for (String host : new String[] {"localhost", "127.0.0.1"}) {
+					for (int i = 0; i < pages.length; i++) {
+						fetched.add(fetcher.fetch(URI.create("http://" + host + ":" + port + "/page/" + i)));
+					}
+				}
+			}
+			for (int n = 0; n < fetched.size(); n++) {
+				String page = pages[n % pages.length];
+				try {
+					failures += HTMLParserTest.check("HTMLFetcher", page, HTMLParserTest.tags(new HTMLTokenizer(page)),
+							fetched.get(n).get().iterator());
+				} catch (ExecutionException e) {
+					System.out.println("HTMLFetcher failed: " + e.getCause());
+					failures++;
+				}
+			}
+			if (maxTotal.get() > 3 || maxInFlight.values().stream().anyMatch(max -> max > 2) || maxTotal.get() < 2) {
+				System.out.println("HTMLFetcher had " + maxTotal + " requests in flight, by host " + maxInFlight);
+				failures++;
+			}
+
+			// The server sends the rest of the page only once the first tags
+			// have been read, which has to happen within the timeout
+			CompletableFuture<List<String>> streamed = fetcher.fetch(URI.create("http://localhost:" + port + "/stream"),
+					(uri, tags) -> {
+						List<String> read = new ArrayList<>();
+						for (int i = 0; i < 3; i++) {
+							read.add(HTMLParserTest.describe(tags.next()));
+						}
+						firstTags.countDown();
+						read.addAll(HTMLParserTest.tags(tags));
+						return read;
+					});
+			failures += checkFetched("stream", streamed,
+					HTMLParserTest.tags(new HTMLTokenizer("<p>first</p><p>second</p>")));
+			failures += checkFetched("latin", fetcher.fetch(URI.create("http://localhost:" + port + "/latin"))
+					.thenApply(tags -> HTMLParserTest.tags(tags.iterator())),
+					HTMLParserTest.tags(new HTMLTokenizer(latin)));
+			failures += checkFetched("meta", fetcher.fetch(URI.create("http://localhost:" + port + "/meta"))
+					.thenApply(tags -> HTMLParserTest.tags(tags.iterator())),
+					HTMLParserTest.tags(new HTMLTokenizer("<meta charset=\"iso-8859-1\">" + latin)));
+			failures += checkFetched("slow", fetcher.fetch(URI.create("http://localhost:" + port + "/slow"))
+					.thenApply(tags -> HTMLParserTest.tags(tags.iterator())), null);
+			failures += checkFetched("missing", fetcher.fetch(URI.create("http://localhost:" + port + "/missing"))
+					.thenApply(tags -> HTMLParserTest.tags(tags.iterator())), null);
+		} finally {
+			fetcher.close();
+			server.stop(0);
+			serverThreads.shutdownNow();
+		}
+		try {
+			fetcher.fetch(URI.create("http://localhost:" + port + "/page/0"));
+			System.out.println("HTMLFetcher fetched after it was closed");
+			failures++;
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that the fetch gave the expected tags, or failed with an
+	 * IOException if none are expected
+	 */
+	private static int checkFetched(String name, CompletableFuture<List<String>> fetch, List<String> expected)
+			throws InterruptedException {
+		List<String> actual;
+		try {
+			actual = fetch.get();
+		} catch (ExecutionException e) {
+			if (expected == null && e.getCause() instanceof IOException) {
+				return 0;
+			}
+			System.out.println("HTMLFetcher/" + name + " failed: " + e.getCause());
+			return 1;
+		}
+		if (expected == null || !expected.equals(actual)) {
+			System.out.println("HTMLFetcher/" + name + " returned " + actual);
+			return 1;
+		}
+		return 0;
+	}
+}
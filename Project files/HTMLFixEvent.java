@@ -0,0 +1,24 @@
+package edu.caltech.cs2.project03;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for fixing one page.
+ */
+@Name("edu.caltech.cs2.project03.Fix")
+@Label("HTML Fix")
+@Category("HTML")
+@Description("Fixing the tags of one page")
+class HTMLFixEvent extends jdk.jfr.Event {
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Synthesized Closing Tags")
+    int synthesizedClosingTags;
+}
@@ -0,0 +1,127 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Repairs a stream of HTMLTags the same way HTMLManager.fixHTML does,
+ * one tag at a time. The only state kept is the stack of tags that are
+ * still open, so a page can be fixed while it is being parsed and
+ * written out without ever holding the whole page.
+ *
+ * A null from the source is treated as the end of the source. An
+ * HTMLParseException from the source is passed on to the caller.
+ *
+ * The fix is reported to HTMLInstrumentation once the last tag has been
+ * returned. Its time includes any time spent reading the source.
+ */
+public class HTMLFixer implements Iterator<HTMLTag> {
+    private final Iterator<HTMLTag> source;
+    private final Stack<HTMLTag> open;
+    // Tags produced by the last closing tag that have not been returned
+    private final Queue<HTMLTag> pending;
+    private boolean exhausted;
+
+    // Measurements, reported once the last tag has been returned
+    private final HTMLFixEvent event;
+    private final long start;
+    private long tokens;
+    private int maxDepth;
+    private int synthesized;
+    private boolean reported;
+
+    /**
+     * Creates an HTMLFixer over the given tags. If the given Iterator is
+     * null, throws an IllegalArgumentException.
+     */
+    public HTMLFixer(Iterator<HTMLTag> source) {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        this.source = source;
+        this.open = new Stack<>();
+        this.pending = new Queue<>();
+        this.exhausted = false;
+        this.event = new HTMLFixEvent();
+        this.event.begin();
+        this.start = HTMLInstrumentation.start();
+    }
+
+    /**
+     * Reads from the source until at least one fixed tag is pending or
+     * the source runs out.
+     */
+    private void advance() {
+        while (this.pending.isEmpty() && !this.exhausted) {
+            HTMLTag tag = this.source.hasNext() ? this.source.next() : null;
+            if (tag == null) {
+                this.exhausted = true;
+                break;
+            }
+            this.tokens++;
+            if (tag.isOpening()) {
+                this.open.push(tag);
+                this.maxDepth = Math.max(this.maxDepth, this.open.size());
+                this.pending.enqueue(tag);
+            } else if (tag.isClosing()) {
+                // Close everything left open inside the matching tag; a
+                // closing tag with no match is dropped
+                while (!this.open.isEmpty()) {
+                    HTMLTag top = this.open.pop();
+                    if (top.matchEquals(tag)) {
+                        this.pending.enqueue(tag);
+                        break;
+                    }
+                    this.pending.enqueue(top.getMatching());
+                    this.synthesized++;
+                }
+            } else {
+                this.pending.enqueue(tag);
+            }
+        }
+    }
+
+    /**
+     * Returns true if there is another fixed HTMLTag
+     * returns false otherwise.
+     */
+    public boolean hasNext() {
+        advance();
+        boolean more = !this.pending.isEmpty() || !this.open.isEmpty();
+        if (!more && !this.reported) {
+            this.reported = true;
+            this.event.end();
+            HTMLInstrumentation.fixed(this.event, this.tokens, this.maxDepth, this.synthesized, this.start);
+        }
+        return more;
+    }
+
+    /**
+     * Returns the next fixed HTMLTag. Once the source runs out, returns
+     * the closing tags for everything still open, innermost first.
+     */
+    public HTMLTag next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (!this.pending.isEmpty()) {
+            return this.pending.dequeue();
+        }
+        this.synthesized++;
+        return this.open.pop().getMatching();
+    }
+
+    /**
+     * Returns the number of tags that are currently open.
+     */
+    public int depth() {
+        return this.open.size();
+    }
+
+    /**
+     * Throws UnsupportedOperationException
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,174 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks HTMLFixer and fixHTML against each other, on every page of
+ * HTMLParserTest and on random runs of adds and fixes, and the metrics
+ * they report.
+ */
+public class HTMLFixerTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		for (String page : HTMLParserTest.pages()) {
+			failures += checkFixer(page);
+		}
+		failures += checkIncremental();
+		failures += checkMetrics();
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that HTMLFixer repairs the page exactly like fixHTML.
+	 */
+	private static int checkFixer(String page) {
+		// A page that fails part way is fixed up to where it failed
+		Queue<HTMLTag> q = new Queue<>();
+		boolean complete = true;
+		try {
+			HTMLParser parser = new HTMLParser(page);
+			while (parser.hasNext()) {
+				q.enqueue(parser.next());
+			}
+		} catch (HTMLParseException e) {
+			complete = false;
+		} catch (RuntimeException e) {
+			return 0;
+		}
+		HTMLManager manager = new HTMLManager(q);
+		manager.fixHTML();
+		List<String> expected = new ArrayList<>();
+		for (HTMLTag tag : manager.getTags()) {
+			expected.add(HTMLParserTest.describe(tag));
+		}
+		int failures = HTMLParserTest.check("HTMLFixer", page, expected, new HTMLFixer(q.iterator()));
+		if (complete) {
+			failures += HTMLParserTest.check("HTMLFixer/STATE_MACHINE", page, expected,
+					new HTMLFixer(new HTMLTokenizer(page)));
+		}
+
+		// Printing the fixed tags as they stream by matches toString
+		StringWriter printed = new StringWriter();
+		try {
+			HTMLManager.prettyPrint(new HTMLFixer(q.iterator()), printed);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!printed.toString().equals(manager.toString())) {
+			System.out.println("prettyPrint differs on: " + page);
+			failures++;
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that fixHTML, which only fixes the tags added since it last
+	 * ran, gives the same tags as fixing the whole collection again, over
+	 * random runs of adds and fixes.
+	 */
+	private static int checkIncremental() {
+		int failures = 0;
+		HTMLTag[] extra = {
+			new HTMLTag("p", HTMLTagType.OPENING), new HTMLTag("p", HTMLTagType.CLOSING),
+			new HTMLTag("div class='x'", HTMLTagType.OPENING), new HTMLTag("div", HTMLTagType.CLOSING),
+			new HTMLTag("Foo", HTMLTagType.OPENING), new HTMLTag("foo", HTMLTagType.CLOSING),
+			new HTMLTag("br", HTMLTagType.SELF_CLOSING), new HTMLTag("text", HTMLTagType.CONTENT),
+			new HTMLTag(" c ", HTMLTagType.COMMENT),
+		};
+		Random random = new Random(25);
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder page = new StringBuilder();
+			for (int j = random.nextInt(20); j > 0; j--) {
+				page.append(HTMLParserTest.FRAGMENTS[random.nextInt(HTMLParserTest.FRAGMENTS.length)]);
+			}
+			TokenBuffer parsed;
+			try {
+				parsed = TokenBuffer.parse(page.toString());
+			} catch (RuntimeException e) {
+				continue;
+			}
+
+			HTMLManager manager;
+			if (random.nextBoolean()) {
+				manager = new HTMLManager(parsed);
+			} else {
+				Queue<HTMLTag> q = new Queue<>();
+				for (HTMLTag tag : parsed) {
+					q.enqueue(tag);
+				}
+				manager = new HTMLManager(q);
+			}
+			List<HTMLTag> expected = new ArrayList<>();
+			for (HTMLTag tag : parsed) {
+				expected.add(tag);
+			}
+
+			for (int step = random.nextInt(30); step > 0; step--) {
+				if (random.nextInt(4) == 0) {
+					manager.fixHTML();
+					List<HTMLTag> refixed = new ArrayList<>();
+					new HTMLFixer(expected.iterator()).forEachRemaining(refixed::add);
+					expected = refixed;
+				} else {
+					HTMLTag tag = extra[random.nextInt(extra.length)];
+					manager.add(tag);
+					expected.add(tag);
+				}
+				failures += HTMLParserTest.check("incremental fixHTML", page.toString(),
+						HTMLParserTest.tags(expected.iterator()),
+						manager.getTags().iterator());
+				if (failures > 0) {
+					return failures;
+				}
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that the installed metrics see every token, and the depth and
+	 * closing tags added by both ways of fixing a page.
+	 */
+	private static int checkMetrics() {
+		CountingMetrics metrics = new CountingMetrics();
+		HTMLInstrumentation.setMetrics(metrics);
+		try {
+			String page = "<div><p>a<b>b</div><!-- c --><br/>";
+			Queue<HTMLTag> tags = new HTMLPage(page).parse(HTMLParserMode.STATE_MACHINE);
+			HTMLManager manager = new HTMLManager(tags);
+			manager.fixHTML();
+			manager.toString();
+			Iterator<HTMLTag> fixed = new HTMLFixer(new HTMLTokenizer(page));
+			while (fixed.hasNext()) {
+				fixed.next();
+			}
+
+			// The content swallows "<b>", so only <p> is closed early
+			boolean passed = metrics.getTokens(HTMLTagType.OPENING) == 2
+					&& metrics.getTokens(HTMLTagType.CLOSING) == 1
+					&& metrics.getTokens(HTMLTagType.SELF_CLOSING) == 1
+					&& metrics.getTokens(HTMLTagType.COMMENT) == 1
+					&& metrics.getTokens(HTMLTagType.CONTENT) == 1
+					&& metrics.getCharsScanned() == page.length()
+					&& metrics.getMaxDepth() == 2
+					&& metrics.getSynthesizedClosingTags() == 2;
+			if (!passed) {
+				System.out.println("Metrics differ:\n" + metrics);
+				return 1;
+			}
+			return 0;
+		} finally {
+			HTMLInstrumentation.setMetrics(HTMLMetrics.NONE);
+		}
+	}
+}
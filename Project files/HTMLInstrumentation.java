@@ -0,0 +1,123 @@
+package edu.caltech.cs2.project03;
+
+/**
+ * Holds the installed HTMLMetrics and reports measurements to it and to
+ * Flight Recorder. When no metrics are installed and the events are not
+ * being recorded, the instrumented code skips all of its measuring, so
+ * the cost is a field read per page.
+ */
+public final class HTMLInstrumentation {
+    private static final HTMLTagType[] TYPES = HTMLTagType.values();
+
+    private static volatile HTMLMetrics metrics = HTMLMetrics.NONE;
+
+    private HTMLInstrumentation() {
+    }
+
+    /**
+     * Installs the given metrics for every parser and HTMLManager. If the
+     * given metrics are null, throws an IllegalArgumentException.
+     */
+    public static void setMetrics(HTMLMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException();
+        }
+        HTMLInstrumentation.metrics = metrics;
+    }
+
+    public static HTMLMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns true if metrics other than NONE are installed
+     */
+    static boolean enabled() {
+        return metrics != HTMLMetrics.NONE;
+    }
+
+    /**
+     * Returns the time to pass to the methods below, or 0 if nothing will
+     * use it. No time is reported for a start of 0, which happens if the
+     * metrics were installed part way through.
+     */
+    static long start() {
+        return enabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Reports time spent in the given phase since the given start
+     */
+    static void phase(HTMLMetrics.Phase phase, long start) {
+        HTMLMetrics current = metrics;
+        if (current != HTMLMetrics.NONE && start != 0) {
+            current.phase(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns true if the given tokens need counting for the given event
+     */
+    static boolean wanted(jdk.jfr.Event event) {
+        return enabled() || event.shouldCommit();
+    }
+
+    /**
+     * Returns the nanoseconds since the given start, or -1 if there is no
+     * start
+     */
+    static long elapsed(long start) {
+        return start == 0 ? -1 : System.nanoTime() - start;
+    }
+
+    /**
+     * Reports that the given page was tokenized in the given number of
+     * nanoseconds, from elapsed, into the given number of tokens of each
+     * type, indexed by ordinal.
+     */
+    static void tokenized(HTMLParseEvent event, String source, long chars, long[] counts, long nanos) {
+        HTMLMetrics current = metrics;
+        if (current != HTMLMetrics.NONE) {
+            if (nanos >= 0) {
+                current.phase(HTMLMetrics.Phase.TOKENIZE, nanos);
+            }
+            current.charsScanned(chars);
+            for (HTMLTagType type : TYPES) {
+                current.tokens(type, counts[type.ordinal()]);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.chars = chars;
+            for (long count : counts) {
+                event.tokens += count;
+            }
+            event.opening = counts[HTMLTagType.OPENING.ordinal()];
+            event.closing = counts[HTMLTagType.CLOSING.ordinal()];
+            event.selfClosing = counts[HTMLTagType.SELF_CLOSING.ordinal()];
+            event.comments = counts[HTMLTagType.COMMENT.ordinal()];
+            event.content = counts[HTMLTagType.CONTENT.ordinal()];
+            event.commit();
+        }
+    }
+
+    /**
+     * Reports that a page of the given number of tokens was fixed since the
+     * given start
+     */
+    static void fixed(HTMLFixEvent event, long tokens, int maxDepth, int synthesized, long start) {
+        HTMLMetrics current = metrics;
+        if (current != HTMLMetrics.NONE) {
+            if (start != 0) {
+                current.phase(HTMLMetrics.Phase.FIX, System.nanoTime() - start);
+            }
+            current.fixed(maxDepth, synthesized);
+        }
+        if (event.shouldCommit()) {
+            event.tokens = tokens;
+            event.maxDepth = maxDepth;
+            event.synthesizedClosingTags = synthesized;
+            event.commit();
+        }
+    }
+}
@@ -6,14 +6,22 @@ package edu.caltech.cs2.project03;
 //
 // If you type a string such as "http://www.google.com/index.html", it will
 // connect to that URL and download the HTML content from it.
+//
+// Given arguments, such as "fix page.html", it runs them through HTMLTool
+// instead of prompting.
 
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.Scanner;
 
 public class HTMLMain {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            HTMLTool.main(args);
+            return;
+        }
         HTMLManager manager = new HTMLManager(new Queue<>());
         Scanner console = new Scanner(System.in);
         String choice = "s";
@@ -79,7 +87,11 @@ public class HTMLMain {
         if (url.length() > 0) {
             HTMLPage parser = getParser(url);
             if (parser != null) {
-                return parser.parse();
+                try {
+                    return parser.parse();
+                } catch (HTMLParseException e) {
+                    System.err.println(e.getMessage());
+                }
             }
             System.err.println("Couldn't resolve input. Try again!");
             return null;
@@ -107,11 +119,15 @@ public class HTMLMain {
     public static HTMLPage getParser(String address) {
         HTMLPage result = null;
         try {
-            result = new HTMLPage(URI.create(address).toURL());
-            System.out.println("Found URL!");
-        } catch (MalformedURLException e1) {
-            result = new HTMLPage(new File(address));
-            System.out.println("Found File!");
+            try {
+                result = new HTMLPage(URI.create(address).toURL());
+                System.out.println("Found URL!");
+            } catch (MalformedURLException e1) {
+                result = new HTMLPage(new File(address));
+                System.out.println("Found File!");
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage());
         }
         return result;
     }
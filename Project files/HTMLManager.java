@@ -1,7 +1,12 @@
 package edu.caltech.cs2.project03;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -12,7 +17,9 @@ import java.util.List;
 
 
 public class HTMLManager {
-    private Queue<HTMLTag> q;
+    private TokenBuffer tokens;
+    // The tokens before this index have been fixed and are balanced
+    private int fixed;
 
     /** 
      * Constructs the HTMLManager given the Queue of HTMLTags passed
@@ -20,48 +27,64 @@ public class HTMLManager {
      * IllegalArgumentException.  
      */
     public HTMLManager(Queue<HTMLTag> page) {
-        Queue<HTMLTag> newQ = new Queue<>();
-
         if (page == null) {
             throw new IllegalArgumentException();
-        } else {
-            for (int i = 0; i < page.size(); i++) {
-                HTMLTag curr = page.peek();
-                newQ.enqueue(curr);
-                page.dequeue();
-                page.enqueue(curr);
-            }
         }
-        this.q = newQ;
+        this.tokens = new TokenBuffer("");
+        for (HTMLTag tag: page) {
+            this.tokens.add(tag);
+        }
 
     }//constructor
 
+    /**
+     * Constructs the HTMLManager given the TokenBuffer passed as a
+     * parameter, without building an HTMLTag per token. If the given
+     * TokenBuffer is null, throws an IllegalArgumentException.
+     */
+    public HTMLManager(TokenBuffer page) {
+        if (page == null) {
+            throw new IllegalArgumentException();
+        }
+        this.tokens = new TokenBuffer(page);
+    }
+
     /**
      * Adds the given tag to the end of the collection of stored tags. If the
      * given tag is null, throws an IllegalArgumentException.
      */
     public void add(HTMLTag tag) {
         if (tag != null) {
-            q.enqueue(tag);
+            tokens.add(tag);
         } else {
             throw new IllegalArgumentException();
         }
     }
 
+    /**
+     * Returns the number of tags in the collection
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the buffer holding the current collection of tags. It is not
+     * a copy, so it must not be changed.
+     */
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
     /**
      * Returns a List of HTMLTags representing the current collection
      * of tags.
      */
     public List<HTMLTag> getTags() {
-        List<HTMLTag> tag_list = new ArrayList<>();
+        List<HTMLTag> tag_list = new ArrayList<>(tokens.size());
 
-        while (!this.q.isEmpty()) {
-            HTMLTag curr = q.dequeue();
-            tag_list.add(curr);
-        }
-
-        for (HTMLTag tag: tag_list) {
-            q.enqueue(tag);
+        for (HTMLTag tag: tokens) {
+            tag_list.add(tag);
         }
 
         return tag_list;
@@ -74,30 +97,93 @@ public class HTMLManager {
      * closing tag.
      **/
     public String toString() {
-        //nested tag increase 2 space
-        List<HTMLTag> tags = getTags();
-        int indent = 0;
-        String result = "";
+        StringBuilder result = new StringBuilder();
+        try {
+            prettyPrint(result);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
 
-        for (HTMLTag tag: tags) {
+    /**
+     * Writes the same text as toString to the given output, one tag at a
+     * time. If a closing tag would bring the indent below zero, throws an
+     * IllegalArgumentException after writing the tags before it.
+     */
+    public void prettyPrint(Appendable out) throws IOException {
+        long start = HTMLInstrumentation.start();
+        Indenter indenter = new Indenter();
+        for (int i = 0; i < tokens.size(); i++) {
+            out.append(indenter.next(tokens.type(i)));
+            tokens.appendTo(i, out);
+            out.append('\n');
+        }
+        HTMLInstrumentation.phase(HTMLMetrics.Phase.PRINT, start);
+    }
 
-            if (tag.isOpening()) {
-                result += ("  ").repeat(indent);
-                indent++;
+    /**
+     * Writes the same text as toString to the given Writer and flushes it.
+     */
+    public void writeTo(Writer out) throws IOException {
+        prettyPrint(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the given tags to the given output indented the same way as
+     * toString, reading them one at a time, so that a page can be printed
+     * as it is parsed. Stops at the first null tag.
+     */
+    public static void prettyPrint(Iterator<HTMLTag> tags, Appendable out) throws IOException {
+        long start = HTMLInstrumentation.start();
+        Indenter indenter = new Indenter();
+        while (tags.hasNext()) {
+            HTMLTag tag = tags.next();
+            if (tag == null) {
+                break;
             }
+            out.append(indenter.next(tag.getType()));
+            tag.appendTo(out);
+            out.append('\n');
+        }
+        HTMLInstrumentation.phase(HTMLMetrics.Phase.PRINT, start);
+    }
 
-            else if (tag.isClosing()) {
-                indent--;
-                result += ("  ").repeat(indent);
-            }//closing tag
+    /**
+     * Tracks the indent of each line. The prefix for each depth is built
+     * once and reused for every line at that depth.
+     */
+    private static class Indenter {
+        private String[] prefixes = new String[16];
+        private int indent = 0;
 
-            else if (tag.isSelfClosing() || tag.isNotTag()) {
-                result += ("  ").repeat(indent);
+        /**
+         * Returns the prefix for the next tag, which has the given type
+         */
+        String next(HTMLTagType type) {
+            if (type == HTMLTagType.OPENING) {
+                return prefix(indent++);
+            } else if (type == HTMLTagType.CLOSING) {
+                return prefix(--indent);
+            } else {
+                return prefix(indent);
             }
-            result += tag + "\n";
+        }
 
+        private String prefix(int depth) {
+            if (depth < 0) {
+                throw new IllegalArgumentException("count is negative: " + depth);
+            }
+            if (depth >= prefixes.length) {
+                prefixes = Arrays.copyOf(prefixes, Math.max(depth + 1, 2 * prefixes.length));
+            }
+            if (prefixes[depth] == null) {
+                prefixes[depth] = ("  ").repeat(depth);
+            }
+            return prefixes[depth];
         }
-        return result;
     }
 
     /**
@@ -105,44 +191,83 @@ public class HTMLManager {
      * an unexpected closing tag is found, the method will insert closing
      * tags for all unexpectedly closed tags at that point. The best use case
      * is for HTML where the author forgot to close their tags.
+     *
+     * Every call leaves the collection balanced, and fixing it again from
+     * the start would change nothing and end with no tags open. So only
+     * the tags added since the last call are fixed, and the result is the
+     * same as fixing the whole collection again. The metrics only count
+     * the tags fixed by this call.
      */
     public void fixHTML() {
-        Stack<HTMLTag> stack = new Stack<>();
-        Queue<HTMLTag> output = new Queue<>();
+        HTMLFixEvent event = new HTMLFixEvent();
+        event.begin();
+        long start = HTMLInstrumentation.start();
 
-        int max = q.size();
+        int[] stack = new int[16];
+        int depth = 0;
+        int maxDepth = 0;
+        int synthesized = 0;
+        TokenBuffer output = new TokenBuffer(tokens.getSource());
 
-        for (int i = 0; i < max; i++) {
-            HTMLTag curr = q.dequeue();
-            if (curr.isSelfClosing() || curr.isNotTag()) {
-                output.enqueue(curr);
-            }//self-closing or comment add directly to output
+        int min = fixed;
+        int max = tokens.size();
 
-            if (curr.isOpening()) {
-                output.enqueue(curr);
-                stack.push(curr);
+        for (int i = min; i < max; i++) {
+            HTMLTagType type = tokens.type(i);
+            if (type == HTMLTagType.OPENING) {
+                output.addCopy(tokens, i);
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                }
+                stack[depth++] = i;
+                maxDepth = Math.max(maxDepth, depth);
             }//opening tag
 
-            if (curr.isClosing()) {
-                Boolean match = false;
-                while (!match && !stack.isEmpty()) {
-                    HTMLTag tag = stack.pop();
-                    if (tag.matches(curr)) {
-                        output.enqueue(curr);
+            else if (type == HTMLTagType.CLOSING) {
+                boolean match = false;
+                while (!match && depth > 0) {
+                    int open = stack[--depth];
+                    if (tokens.sameElement(open, i)) {
+                        output.addCopy(tokens, i);
                         match = true;
                     } else {
-                        output.enqueue(tag.getMatching());
+                        output.addMatching(tokens, open);
+                        synthesized++;
                     }//else
                 }//while
             }//if closing
+
+            else {
+                output.addCopy(tokens, i);
+            }//self-closing or comment add directly to output
         }//for
 
-        while (!stack.isEmpty()) {
-            HTMLTag close = stack.pop().getMatching();
-            output.enqueue(close);
+        while (depth > 0) {
+            output.addMatching(tokens, stack[--depth]);
+            synthesized++;
         }//add closing tags for any remaining opening tags
 
-        q = output;
+        if (min == 0) {
+            tokens = output;
+        } else {
+            // Replace the new tags with their fixed versions
+            tokens.truncate(min);
+            tokens.addAll(output, 0, output.size());
+        }
+        fixed = tokens.size();
+
+        event.end();
+        HTMLInstrumentation.fixed(event, max - min, maxDepth, synthesized, start);
     }//fixHTML
 
+    /**
+     * Returns the given tags fixed the same way as fixHTML, computed
+     * lazily as the returned Iterator is advanced. Only the tags that are
+     * still open are held in memory. If the given Iterator is null, throws
+     * an IllegalArgumentException.
+     */
+    public static Iterator<HTMLTag> fixHTML(Iterator<HTMLTag> tags) {
+        return new HTMLFixer(tags);
+    }
+
 }//class
@@ -0,0 +1,47 @@
+package edu.caltech.cs2.project03;
+
+/**
+ * Receives measurements from the parsers and HTMLManager. Install one with
+ * HTMLInstrumentation.setMetrics; until then NONE is used, and nothing is
+ * measured at all. Every method does nothing by default, so an
+ * implementation only overrides the ones it wants.
+ *
+ * Measurements are reported once per page, not once per token, and may
+ * arrive from several threads at once.
+ */
+public interface HTMLMetrics {
+    /** enumerates the phases time is reported for */
+    enum Phase {
+        LOAD, TOKENIZE, ATTRIBUTES, FIX, PRINT
+    }
+
+    /** The default, which ignores everything */
+    HTMLMetrics NONE = new HTMLMetrics() {
+    };
+
+    /**
+     * Reports that a page was tokenized into the given number of tokens of
+     * the given type
+     */
+    default void tokens(HTMLTagType type, long count) {
+    }
+
+    /**
+     * Reports that the given number of chars were tokenized
+     */
+    default void charsScanned(long chars) {
+    }
+
+    /**
+     * Reports the given number of nanoseconds spent in the given phase
+     */
+    default void phase(Phase phase, long nanos) {
+    }
+
+    /**
+     * Reports that fixing a page went the given number of tags deep and
+     * added the given number of closing tags
+     */
+    default void fixed(int maxDepth, int synthesizedClosingTags) {
+    }
+}
@@ -3,62 +3,84 @@ package edu.caltech.cs2.project03;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Iterator;
 
 /** 
  * Parses a File, String, or URL into a List<HTMLTag>
  */
 public class HTMLPage {
     public String unparsedPage;
+    private String name = "string";
 
     /** 
-     * Parses the given input stream from the source with the given name 
+     * Parses the given input stream from the source with the given name,
+     * in the charset its byte order mark or meta tag gives, or else UTF-8
      */
-    private void parseStream(String name, InputStream stream) {
+    private void parseStream(String name, InputStream stream) throws IOException {
+        parseReader(name, HTMLByteTokenizer.reader(stream), 0);
+    }
+
+    /**
+     * Reads all of the given reader from the source with the given name,
+     * expecting about the given number of characters
+     */
+    private void parseReader(String name, Reader in, long expected) {
         try {
-            /* Read the HTML */
-            Reader in = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
-            StringBuilder response = new StringBuilder();
-            int c = in.read();
-            while (c >= 0) {
-                response.append((char)c);
-                c = in.read();
-            }
-            this.unparsedPage = response.toString();
+            this.unparsedPage = read(in, expected);
         } catch (IOException e) {
-            System.err.println("The " + name + " is invalid.");
-            System.exit(1);
+            throw new UncheckedIOException("The " + name + " is invalid.", e);
         }
 
     }
 
+    /**
+     * Returns all of the text left in the given reader, expecting about
+     * the given number of characters
+     */
+    static String read(Reader in, long expected) throws IOException {
+        StringBuilder response = new StringBuilder((int) Math.min(expected, Integer.MAX_VALUE - 8));
+        char[] chunk = new char[HTMLTokenizer.DEFAULT_BUFFER_SIZE];
+        int read = in.read(chunk);
+        while (read >= 0) {
+            response.append(chunk, 0, read);
+            read = in.read(chunk);
+        }
+        return response.toString();
+    }
+
     /** 
-     * Creates a page based off the HTML at the given source URL 
+     * Creates a page based off the HTML at the given source URL. If it
+     * cannot be read, throws an UncheckedIOException.
      */
     public HTMLPage(URL url) {
+        this.name = url.toString();
+        long start = HTMLInstrumentation.start();
         try {
             /* Create the GET request. */
             HttpURLConnection conn = (HttpURLConnection)url.openConnection();
             conn.setRequestMethod("GET");
-            conn.setDoOutput(true);
             parseStream("URL '" + url.toString() + "'", conn.getInputStream());
         } catch (IOException e) {
-            System.err.println("The URL " + url.toString() + " is invalid.");
-            System.exit(1);
+            throw new UncheckedIOException("The URL " + url.toString() + " is invalid.", e);
         }
+        HTMLInstrumentation.phase(HTMLMetrics.Phase.LOAD, start);
     }
 
     /**
-     * Creates a page based off the given source File 
+     * Creates a page based off the given source File, in the charset its
+     * byte order mark or meta tag gives, or else UTF-8. If it cannot be
+     * read, throws an UncheckedIOException.
      */
     public HTMLPage(File file) {
         String filename = file.toString();
-        try {
-            parseStream("file " + filename  + "'", new FileInputStream(file));
-        } catch (FileNotFoundException ee) {
-            System.err.println("The file '" + filename + "' is invalid.");
-            System.exit(1);
+        this.name = filename;
+        long start = HTMLInstrumentation.start();
+        try (MappedFileReader in = new MappedFileReader(file)) {
+            parseReader("file '" + filename + "'", in, in.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("The file '" + filename + "' is invalid.", e);
         }
-
+        HTMLInstrumentation.phase(HTMLMetrics.Phase.LOAD, start);
     }
 
     /**
@@ -68,15 +90,62 @@ public class HTMLPage {
         this.unparsedPage = str;
     }
 
+    /**
+     * Parses the source String into a TokenBuffer, which keeps offsets into
+     * the source instead of an HTMLTag per token
+     */
+    public TokenBuffer tokens() {
+        return tokens(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses the source String into a TokenBuffer, throwing an
+     * HTMLParseException as soon as the page breaks the given limits
+     */
+    public TokenBuffer tokens(ParseLimits limits) {
+        return TokenBuffer.parse(this.unparsedPage, limits, this.name);
+    }
+
     /** 
      * Parses the source String and returns the List of HTMLTags 
      */
     public Queue<HTMLTag> parse() {
+        return parse(HTMLParserMode.REGEX);
+    }
+
+    /**
+     * Parses the source String with the given kind of parser and returns
+     * the List of HTMLTags
+     */
+    public Queue<HTMLTag> parse(HTMLParserMode mode) {
+        return parse(mode, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses the source String with the given kind of parser and returns
+     * the List of HTMLTags. Throws an HTMLParseException if no tag can be
+     * read at some point or the page breaks the given limits.
+     */
+    public Queue<HTMLTag> parse(HTMLParserMode mode, ParseLimits limits) {
+        HTMLParseEvent event = new HTMLParseEvent();
+        event.begin();
+        long start = HTMLInstrumentation.start();
+
         Queue<HTMLTag> parsed = new Queue<>();
-        HTMLParser parser = new HTMLParser(this.unparsedPage);
+        Iterator<HTMLTag> parser = mode.parser(this.unparsedPage, limits);
         while (parser.hasNext()) {
             parsed.enqueue(parser.next());
         }
+
+        event.end();
+        long nanos = HTMLInstrumentation.elapsed(start);
+        if (HTMLInstrumentation.wanted(event)) {
+            long[] counts = new long[HTMLTagType.values().length];
+            for (HTMLTag tag : parsed) {
+                counts[tag.getType().ordinal()]++;
+            }
+            HTMLInstrumentation.tokenized(event, this.name, this.unparsedPage.length(), counts, nanos);
+        }
         return parsed;
     } 
 }
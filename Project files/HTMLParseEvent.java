@@ -0,0 +1,42 @@
+package edu.caltech.cs2.project03;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for tokenizing one page, with the shape of the
+ * page as its fields.
+ */
+@Name("edu.caltech.cs2.project03.Parse")
+@Label("HTML Parse")
+@Category("HTML")
+@Description("Tokenizing one page")
+class HTMLParseEvent extends jdk.jfr.Event {
+    @Label("Source")
+    String source;
+
+    @Label("Chars")
+    @DataAmount(DataAmount.BYTES)
+    long chars;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Opening Tags")
+    long opening;
+
+    @Label("Closing Tags")
+    long closing;
+
+    @Label("Self-Closing Tags")
+    long selfClosing;
+
+    @Label("Comments")
+    long comments;
+
+    @Label("Content")
+    long content;
+}
@@ -0,0 +1,47 @@
+package edu.caltech.cs2.project03;
+
+/**
+ * Thrown when a page cannot be parsed, either because no token can be read
+ * at some point or because the page breaks one of its ParseLimits.
+ */
+public class HTMLParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /** enumerates the reasons parsing can fail */
+    public enum Reason {
+        /** No token starts at the position */
+        MALFORMED,
+        /** A token is longer than ParseLimits.maxTokenLength */
+        TOKEN_TOO_LONG,
+        /** Tags are nested deeper than ParseLimits.maxDepth */
+        TOO_DEEP,
+        /** The page has more than ParseLimits.maxTokens tokens */
+        TOO_MANY_TOKENS,
+        /** Parsing took longer than ParseLimits.timeoutMillis */
+        TIMEOUT
+    }
+
+    private final Reason reason;
+    private final long position;
+
+    /**
+     * Creates an exception for the given reason, at the given char offset
+     * into the page
+     */
+    public HTMLParseException(Reason reason, long position, String message) {
+        super(message + " at char " + position);
+        this.reason = reason;
+        this.position = position;
+    }
+
+    public Reason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * Returns the char offset into the page where parsing failed
+     */
+    public long getPosition() {
+        return this.position;
+    }
+}
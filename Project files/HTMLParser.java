@@ -7,22 +7,126 @@ import java.util.regex.Pattern;
 /**
  * Parses a string of tags into HTMLTags. Iterates
  * over the given source String
+ *
+ * The source String is never copied: the parser keeps a cursor into it
+ * and anchors every match at that cursor.
+ *
+ * The patterns backtrack badly when they fail: a tag of many spaces, or
+ * a "</" followed by many spaces and no '>', takes cubic time. So the tag
+ * pattern is only tried once a linear scan has shown it will match, and
+ * comments and the closing tags that end content are matched by hand.
+ * Under ParseLimits, every match is also confined to twice the maximum
+ * token length past the cursor, and the tag matcher reads the page
+ * through a view that checks the clock.
+ *
+ * Content and comments are where most of a page's text is, so they are
+ * never walked one char at a time from here: DelimiterScanner jumps from
+ * one '<' to the next, and a closing tag is only looked for there. A
+ * comment ends at its first '>', so it is found by scanning for that '>'
+ * and checking the "--" before it, which is exactly what TAG_COMMENT
+ * matched.
  */
 public class HTMLParser implements Iterator<HTMLTag> {
     private static final Pattern TAG_PATTERN = Pattern.compile("^<\\s*(?<closing>/)?\\s*(?<tagData>[^>]*[^/> ])\\s*(?<selfclosing>/)?\\s*>");
-    private static final Pattern TAG_COMMENT = Pattern.compile("^<!--(?<comment>[^>]*[^/>])?-->", Pattern.DOTALL);
-    private static final Pattern TAG_SCRIPT = Pattern.compile("<\\s*/\\s*script\\s*>");
-    private static final Pattern TAG_CLOSE = Pattern.compile("<\\s*/\\s*(?<tagData>[^>]+)\\s*>");
 
-    private String page;
+    private final String page;
+    private final int end;
+    private int pos;
     private String prevTag;
+    private final ParseLimits.Guard guard;
+
+    private final Matcher tagMatcher;
 
     /**
      * Creates an HTMLParser based off the given source String
      */
     public HTMLParser(String page) {
-        this.page = page.trim();
+        this(page, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Creates an HTMLParser based off the given source String that throws an
+     * HTMLParseException as soon as the page breaks the given limits
+     */
+    public HTMLParser(String page, ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.page = page;
         this.prevTag = "";
+        this.guard = limits.guard();
+
+        // Same bounds as page.trim(), without the copy
+        int last = page.length();
+        while (last > 0 && page.charAt(last - 1) <= ' ') {
+            last--;
+        }
+        this.end = last;
+        this.pos = 0;
+        skipWhitespace();
+
+        CharSequence text = this.guard == null ? page : new Timed();
+        this.tagMatcher = TAG_PATTERN.matcher(text);
+    }
+
+    /**
+     * The page as the matchers see it under limits: every so many reads,
+     * checks that the page has not run out of time.
+     */
+    private class Timed implements CharSequence {
+        private int reads;
+
+        public char charAt(int index) {
+            if ((++this.reads & 0xFFFF) == 0) {
+                guard.checkTime(pos);
+            }
+            return page.charAt(index);
+        }
+
+        public int length() {
+            return page.length();
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return page.subSequence(start, end);
+        }
+
+        public String toString() {
+            return page;
+        }
+    }
+
+    /**
+     * Returns where matches starting at the cursor must end: the end of the
+     * page, or under limits as far past the cursor as a token may be looked
+     * for.
+     */
+    private int regionEnd() {
+        if (this.guard == null) {
+            return this.end;
+        }
+        return (int) Math.min(this.end, (long) this.pos + this.guard.window());
+    }
+
+    /**
+     * Returns the first index from the given one, up to the given end, that
+     * is not whitespace as \s matches it
+     */
+    private int skipSpaces(int from, int to) {
+        while (from < to && AttributeScanner.isSpace(this.page.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Advances the cursor past any leading whitespace, using the same
+     * definition of whitespace as String.trim().
+     */
+    private void skipWhitespace() {
+        while (this.pos < this.end && this.page.charAt(this.pos) <= ' ') {
+            this.pos++;
+        }
     }
 
     /**
@@ -37,10 +141,34 @@ public class HTMLParser implements Iterator<HTMLTag> {
      **/
     public HTMLTag findNormalTag() {
 
-        Matcher m = TAG_PATTERN.matcher(this.page);
+        // The tag data must end in a character that is not '/', ' ' or
+        // '>', with at most one '/' between it and the first '>'
+        int close = DelimiterScanner.indexOf(this.page, '>', this.pos, regionEnd());
+        if (close < 0) {
+            return null;
+        }
+        int slashes = 0;
+        int last = close - 1;
+        while (last > this.pos && (this.page.charAt(last) == '/' || this.page.charAt(last) == ' ')) {
+            if (this.page.charAt(last) == '/') {
+                slashes++;
+            }
+            last--;
+        }
+        if (last == this.pos || slashes > 1) {
+            return null;
+        }
+
+        Matcher m = this.tagMatcher.region(this.pos, regionEnd());
         HTMLTag tag;
 
-        if (m.find()) {
+        if (m.lookingAt()) {
+            // HTMLTag cannot be built from a tag with nothing but
+            // whitespace inside it
+            if (m.group("tagData").trim().isEmpty()) {
+                throw new HTMLParseException(HTMLParseException.Reason.MALFORMED, this.pos,
+                        "Tag has no element name");
+            }
             if (m.group("closing") != null) {
                 tag = new HTMLTag(m.group("tagData"), HTMLTagType.CLOSING);
                 prevTag = "";
@@ -55,7 +183,7 @@ public class HTMLParser implements Iterator<HTMLTag> {
             return null;
         }
 
-        this.page = this.page.substring(m.group(0).length());
+        this.pos = m.end();
 
         return tag;
     }
@@ -66,21 +194,18 @@ public class HTMLParser implements Iterator<HTMLTag> {
      * to an empty String
      **/
     public HTMLTag findCommentTag() {
-        Matcher m = TAG_COMMENT.matcher(this.page);
-        HTMLTag tag;
-
-        if (m.find()) {
-            if (m.group("comment") != null) { //comment pattern
-                tag = new HTMLTag(m.group("comment"), HTMLTagType.COMMENT);
-                prevTag = "";
-            } else {
-                return null;
-            }
-        } else {
+        // As "^<!--(?<comment>[^>]*[^/>])?-->" would match, with a comment
+        // that is not empty
+        int start = this.pos + 4;
+        int close = DelimiterScanner.indexOf(this.page, '>', start, regionEnd());
+        if (close < 0 || close - 3 < start || this.page.charAt(close - 1) != '-'
+                || this.page.charAt(close - 2) != '-' || this.page.charAt(close - 3) == '/') {
             return null;
         }
 
-        this.page = this.page.substring(m.group(0).length());
+        HTMLTag tag = new HTMLTag(this.page.substring(start, close - 2), HTMLTagType.COMMENT);
+        prevTag = "";
+        this.pos = close + 1;
 
         return tag;
     }
@@ -102,50 +227,91 @@ public class HTMLParser implements Iterator<HTMLTag> {
      **/
     public HTMLTag findContent() {
 
-        HTMLTag tag;
-
-        if (prevTag.equals("script")) {
-            Matcher pt = TAG_SCRIPT.matcher(this.page);
-
-            if (pt.find()) {
-                tag = new HTMLTag(this.page.substring(0, pt.start()), HTMLTagType.CONTENT);
-                prevTag = "";
-            } else {
-                return null;
-            }
+        int end = findClosingTag(this.pos, regionEnd(), prevTag.equals("script"));
+        if (end < 0) {
+            return null;
+        }
 
-            this.page = this.page.substring(pt.start());
+        HTMLTag tag = new HTMLTag(this.page.substring(this.pos, end), HTMLTagType.CONTENT);
+        prevTag = "";
+        this.pos = end;
 
-        } else {
-            Matcher cl = TAG_CLOSE.matcher(this.page);
+        return tag;
+    }
 
-            if (cl.find()) {
-                tag = new HTMLTag(this.page.substring(0, cl.start()), HTMLTagType.CONTENT);
-                prevTag = "";
+    /**
+     * Returns the start of the first closing tag in the given range, or of
+     * the first closing script tag if asked, or -1 if there is none.
+     *
+     * A closing tag is a '<', then a '/' with only whitespace before it,
+     * then tag data of at least one char up to the first '>' after the
+     * '/'; a closing script tag has exactly "script" and whitespace
+     * between its '/' and '>'. These are what the patterns TAG_CLOSE and
+     * TAG_SCRIPT matched, but the patterns took cubic time to fail on a
+     * "</" followed by many spaces. Here the first '>' after a '/' is only
+     * searched for again once a later '/' passes it, so the whole search
+     * is linear.
+     */
+    private int findClosingTag(int from, int to, boolean script) {
+        int close = -1;
+        for (int i = DelimiterScanner.indexOf(this.page, '<', from, to); i >= 0;
+                i = DelimiterScanner.indexOf(this.page, '<', i + 1, to)) {
+            int slash = skipSpaces(i + 1, to);
+            if (slash == to || this.page.charAt(slash) != '/') {
+                continue;
+            }
+            if (script) {
+                int name = skipSpaces(slash + 1, to);
+                if (name + 6 <= to && this.page.startsWith("script", name)) {
+                    int last = skipSpaces(name + 6, to);
+                    if (last < to && this.page.charAt(last) == '>') {
+                        return i;
+                    }
+                }
             } else {
-                return null;
+                if (close <= slash) {
+                    close = DelimiterScanner.indexOf(this.page, '>', slash + 1, to);
+                    if (close < 0) {
+                        // No later '/' has a '>' after it either
+                        return -1;
+                    }
+                }
+                if (close > slash + 1) {
+                    return i;
+                }
             }
-
-            this.page = this.page.substring(cl.start());
         }
-
-        return tag;
+        return -1;
     }
 
     /**
-     * Returns the next HTMLTag in the source String
+     * Returns the next HTMLTag in the source String. If no tag can be read,
+     * or the limits are broken, throws an HTMLParseException.
      */
     public HTMLTag next() {
-        this.page = this.page.trim();
-        if (this.page.startsWith("<!--")) {
-            return findCommentTag();
+        skipWhitespace();
+        int start = this.pos;
+        HTMLTag tag;
+        if (this.page.startsWith("<!--", this.pos)) {
+            tag = findCommentTag();
         }
-        else if (this.page.startsWith("<") && !this.prevTag.equals("script")) {
-            return findNormalTag();
+        else if (this.pos < this.end && this.page.charAt(this.pos) == '<' && !this.prevTag.equals("script")) {
+            tag = findNormalTag();
         }
         else {
-            return findContent();
+            tag = findContent();
         }
+
+        if (tag == null) {
+            if (regionEnd() < this.end) {
+                throw this.guard.tooLong(start);
+            }
+            throw new HTMLParseException(HTMLParseException.Reason.MALFORMED, start, "No tag could be read");
+        }
+        if (this.guard != null) {
+            this.guard.token(tag.getType(), this.pos - start, start);
+        }
+        return tag;
     }
 
     /**
@@ -153,7 +319,7 @@ public class HTMLParser implements Iterator<HTMLTag> {
      * returns false otherwise.
      */
     public boolean hasNext() {
-        return !this.page.isEmpty();
+        return this.pos < this.end;
     }
 
     /**
@@ -162,4 +328,4 @@ public class HTMLParser implements Iterator<HTMLTag> {
     public void remove() {
         throw new UnsupportedOperationException();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+/** enumerates the available ways of tokenizing a page into HTMLTags */
+public enum HTMLParserMode {
+    REGEX,
+    STATE_MACHINE,
+    PARALLEL;
+
+    /**
+     * Returns a new iterator over the HTMLTags in the given source String
+     */
+    public Iterator<HTMLTag> parser(String page) {
+        return parser(page, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Returns a new iterator over the HTMLTags in the given source String
+     * that throws an HTMLParseException where the page breaks the given
+     * limits
+     */
+    public Iterator<HTMLTag> parser(String page, ParseLimits limits) {
+        if (this == STATE_MACHINE) {
+            HTMLTokenizer tokenizer = new HTMLTokenizer(page);
+            tokenizer.setLimits(limits);
+            return tokenizer;
+        } else if (this == PARALLEL) {
+            return new ParallelParser(page, ForkJoinPool.commonPool(), ParallelParser.DEFAULT_CHUNK_SIZE, limits);
+        }
+        return new HTMLParser(page, limits);
+    }
+}
@@ -0,0 +1,567 @@
+package edu.caltech.cs2.project03;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class HTMLParserTest {
+	/**
+	 * Pages, each followed by the tags the original HTMLParser made of it,
+	 * as tags() describes them. Where it returned null or threw
+	 * IllegalStateException, as noted, every parser now fails instead.
+	 */
+	private static final String[][] CORPUS = {
+		{""},
+		{"   "},
+		{"<b>Hi</b><br/>", "opening <b>", "text Hi", "closing </b>", "self-closing <br/>"},
+		{"<html><body><p>text <b>bold</b> more</p></body></html>", "opening <html>", "opening <body>",
+				"opening <p>", "text text <b>bold", "closing </b>", "text more", "closing </p>", "closing </body>",
+				"closing </html>"},
+		{"<p class=\"a b\" id=x hidden>content</p>", "opening <p class=\"a b\" id=x hidden>", "text content",
+				"closing </p>"},
+		{"<  / p  >", "closing </p>"},
+		{"< p/>", "self-closing <p/>"},
+		{"<img src=\"a.png\" / >", "self-closing <img src=\"a.png\"/>"},
+		{"<br>", "self-closing <br/>"},
+		{"<!-- a comment --><p>x</p>", "text <!-- a comment -->", "opening <p>", "text x", "closing </p>"},
+		{"<!-- a --- comment ---><p>x</p>", "text <!-- a --- comment --->", "opening <p>", "text x", "closing </p>"},
+		{"<script>if (a < b) { x = \"</p>\"; }</script>", "opening <script>", "text if (a < b) { x = \"</p>\"; }",
+				"closing </script>"},
+		{"<script></script>", "opening <script>", "text ", "closing </script>"},
+		{"<script><!-- hidden --></script>", "opening <script>", "text <!-- hidden -->", "closing </script>"},
+		{"<SCRIPT>a</SCRIPT>", "opening <SCRIPT>", "text a", "closing </SCRIPT>"},
+		{"<script>a< / script >", "opening <script>", "text a", "closing </script>"},
+		{"<div>\n\t<span>a\r\nb</span>\n</div>\n", "opening <div>", "opening <span>", "text a\r\nb",
+				"closing </span>", "closing </div>"},
+		// The original returned null
+		{"<p>a </ >", "opening <p>", "text a ", "MALFORMED at 5"},
+		{"<p>a </>b</p>", "opening <p>", "text a </>b", "closing </p>"},
+		// The original threw IllegalStateException
+		{"<\t>", "MALFORMED at 0"},
+		{"</\t/\t>", "closing <//>"},
+		{"<div><p>a<b>b</div>c</p>", "opening <div>", "opening <p>", "text a<b>b", "closing </div>", "text c",
+				"closing </p>"},
+		{"</i><ul><li>one<li>two</ul><em>", "closing </i>", "opening <ul>", "opening <li>", "text one<li>two",
+				"closing </ul>", "opening <em>"},
+		// The original returned null
+		{"<p>a</p><!-- <div> </p> <b> --><p>b</p><!-- x -->", "opening <p>", "text a", "closing </p>",
+				"MALFORMED at 8"},
+		{"<script>if (a<b) { s = '<p>x</p>'; }</script><p>after</p><script> </x> <!-- </script><i>y</i>",
+				"opening <script>", "text if (a<b) { s = '<p>x</p>'; }", "closing </script>", "opening <p>",
+				"text after", "closing </p>", "opening <script>", "text </x> <!-- ", "closing </script>",
+				"opening <i>", "text y", "closing </i>"},
+		// The original returned null
+		{"<p>x</p><!-- never closed <p>y</p>", "opening <p>", "text x", "closing </p>", "MALFORMED at 8"},
+		{"<p>a<br></br>b</BR\r></p>", "opening <p>", "text a<br>", "self-closing <br/>", "text b",
+				"self-closing <BR/>", "closing </p>"},
+		// The original threw IllegalStateException
+		{"</\r>", "MALFORMED at 0"},
+		// The original threw IllegalStateException
+		{"<p>a</\r\r>", "opening <p>", "text a", "MALFORMED at 4"},
+		{"<a href=\"x.html\" title=\"say hi\">link</a>", "opening <a href=\"x.html\" title=\"say hi\">",
+				"text link", "closing </a>"},
+		{"<p  class = \"a\"  hidden data-x=\"\">x</p>", "opening <p class = \"a\" hidden data-x=\"\">", "text x",
+				"closing </p>"},
+		// The original returned null
+		{"<img src=\"a.png\" alt=\"a > b\">", "self-closing <img src=\"a.png\" alt=\" a/>", "MALFORMED at 26"},
+		{"<input type=\"text\" value=\" padded \" disabled/>",
+				"self-closing <input type=\"text\" value=\" padded \" disabled/>"},
+		{"<td colspan=\"2\" style=\"color: red; width: 10px\">x</td>",
+				"opening <td colspan=\"2\" style=\"color: red; width: 10px\">", "text x", "closing </td>"},
+		{"<div\n\tclass=\"a\"\n\tid=\"b\">x</div>", "opening <div class=\"a\"\n\tid=\"b\">", "text x",
+				"closing </div>"},
+		{"<A HREF=\"Y\">z</A>", "opening <A HREF=\"Y\">", "text z", "closing </A>"},
+		{"<p title=\"it's\">x</p>", "opening <p title=\"it's\">", "text x", "closing </p>"},
+		{"<p data-a=\"1\" data-b=\"2\" data-c=\"3\"/>", "self-closing <p data-a=\"1\" data-b=\"2\" data-c=\"3\"/>"},
+		{"<option selected value=\"v\">o</option>", "opening <option selected value=\"v\">", "text o",
+				"closing </option>"},
+		{"<p a='x' b=y c=\"d\" e = \"f\">t</p>", "opening <p a='x' b=y c=\"d\" e = \"f\">", "text t", "closing </p>"},
+		{"<p title='say \"hi\"' id=x>t</p>", "opening <p title='say \"hi\"' id=x>", "text t", "closing </p>"},
+	};
+
+	/**
+	 * For pages CorpusGenerator makes, of the given size or of the given
+	 * profile at 16K chars: the number of tags the original HTMLParser
+	 * made, as tags() describes them, the hashCode of the List of all but
+	 * the last, and the last.
+	 */
+	private static final Object[][] GENERATED = {
+		{1024, 104, -1069097435, "closing </html>"},
+		{4096, 364, 144886558, "closing </html>"},
+		{16384, 1444, -1748649540, "closing </html>"},
+		{65536, 5704, -718987299, "closing </html>"},
+		{262144, 22804, 356343224, "closing </html>"},
+		{1048576, 91184, 461064327, "closing </html>"},
+		{CorpusProfile.MIXED, 328, 14556292, "closing </div>"},
+		{CorpusProfile.DEEP, 632, 1706391416, "closing </article>"},
+		// The original returned null
+		{CorpusProfile.WIDE, 239, 414405560, "MALFORMED at 16374"},
+		{CorpusProfile.ATTRIBUTES, 119, -898275487, "closing </li>"},
+		{CorpusProfile.SCRIPTS, 306, 1446082763, "closing </a>"},
+		// The original returned null
+		{CorpusProfile.TEXT, 1, 1, "MALFORMED at 0"},
+		{CorpusProfile.COMMENTS, 420, -1754738924, "closing </span>"},
+		{CorpusProfile.MALFORMED, 420, 796747852, "closing </a>"},
+	};
+
+	static final String[] FRAGMENTS = {
+		"<p>", "</p>", "<br/>", "<!--", "-->", "<script>", "</script>", "< / script >",
+		"text", " ", "\n", "<", ">", "/", "<a href='x'>", "</a>", "<!-- c -->", "</br>", "</\r>",
+	};
+
+	public static void main(String[] args) {
+		int failures = 0;
+		failures += checkRecorded();
+		failures += checkGenerated();
+
+		Random random = new Random(12);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder page = new StringBuilder();
+			for (int j = random.nextInt(40); j > 0; j--) {
+				page.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			failures += compareParallel(page.toString());
+		}
+
+		failures += checkAttributes();
+		failures += checkUnnamed();
+		failures += checkScanner();
+		failures += checkClosingTags();
+		failures += checkLimits();
+
+		System.out.println(failures == 0 ? "All parsers agree." : failures + " page(s) differ.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Returns the pages of the corpus
+	 */
+	static List<String> corpus() {
+		List<String> pages = new ArrayList<>();
+		for (String[] page : CORPUS) {
+			pages.add(page[0]);
+		}
+		return pages;
+	}
+
+	/**
+	 * Returns the pages of the corpus and repeated pages from 1K to 1M
+	 * chars, which the other tests check every parser on
+	 */
+	static List<String> pages() {
+		List<String> pages = corpus();
+		for (int size = 1024; size <= 1024 * 1024; size *= 4) {
+			pages.add(CorpusGenerator.repeatedPage(size));
+		}
+		return pages;
+	}
+
+	/**
+	 * Checks every parser against the tags recorded for each page of the
+	 * corpus.
+	 */
+	private static int checkRecorded() {
+		int failures = 0;
+		for (String[] page : CORPUS) {
+			failures += compare(page[0], List.of(page).subList(1, page.length));
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks the REGEX parser against what was recorded for generated
+	 * pages, and every other parser against it.
+	 */
+	private static int checkGenerated() {
+		int failures = 0;
+		for (Object[] recorded : GENERATED) {
+			String page = recorded[0] instanceof CorpusProfile profile
+					? CorpusGenerator.generate(profile, 1, 16 * 1024)
+					: CorpusGenerator.repeatedPage((Integer) recorded[0]);
+			List<String> expected = tags(HTMLParserMode.REGEX.parser(page));
+			String last = expected.get(expected.size() - 1);
+			if (expected.size() != (Integer) recorded[1]
+					|| expected.subList(0, expected.size() - 1).hashCode() != (Integer) recorded[2]
+					|| !last.equals(recorded[3])) {
+				System.out.println("REGEX made " + expected.size() + " tags ending with " + last + " on "
+						+ recorded[0] + " instead of " + recorded[1] + " ending with " + recorded[3]);
+				failures++;
+			}
+			failures += compare(page, expected);
+		}
+		return failures;
+	}
+
+	/**
+	 * Parses the page in every mode, streamed and in parallel, and reports
+	 * whether the tags differ from the expected ones.
+	 */
+	private static int compare(String page, List<String> expected) {
+		int failures = 0;
+		for (HTMLParserMode mode : HTMLParserMode.values()) {
+			failures += check(mode.toString(), page, expected, mode.parser(page));
+		}
+
+		// Small windows fed one character per read force every token to
+		// cross a window boundary
+		for (int bufferSize : new int[] {1, 3, 16}) {
+			Reader trickle = new FilterReader(new StringReader(page)) {
+				@Override
+				public int read(char[] cbuf, int off, int len) throws IOException {
+					return super.read(cbuf, off, Math.min(len, 1));
+				}
+			};
+			failures += check("streaming/" + bufferSize, page, expected,
+					new HTMLTokenizer(trickle, bufferSize));
+		}
+		failures += check("streaming", page, expected,
+				new HTMLTokenizer(new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8))));
+		failures += compareParallel(page);
+		return failures;
+	}
+
+	/**
+	 * Parses the page in parallel with chunks small enough that their edges
+	 * fall inside tags, comments and scripts.
+	 */
+	private static int compareParallel(String page) {
+		List<String> expected = tags(HTMLParserMode.REGEX.parser(page));
+		int failures = 0;
+		for (int chunkSize : new int[] {1, 2, 3, 7, 64, 4096}) {
+			if (page.length() / chunkSize > 100_000) {
+				continue;
+			}
+			failures += check("PARALLEL/" + chunkSize, page, expected,
+					new ParallelParser(page, ForkJoinPool.commonPool(), chunkSize));
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that attributes in every quoting style are split and read back.
+	 */
+	private static int checkAttributes() {
+		HTMLTag tag = new HTMLTag("a href=\"x.html\" title='say \"hi\"' width = 10 hidden", HTMLTagType.OPENING);
+		List<HTMLTag.Attribute> expected = List.of(
+				new HTMLTag.Attribute("href", "x.html"),
+				new HTMLTag.Attribute("title", "say \"hi\""),
+				new HTMLTag.Attribute("width", "10"),
+				new HTMLTag.Attribute("hidden", null));
+
+		int failures = 0;
+		if (!expected.equals(tag.attributes())) {
+			System.out.println("attributes() returned " + tag.attributes());
+			failures++;
+		}
+		if (!"10".equals(tag.getAttribute("WIDTH")) || !"".equals(tag.getAttribute("hidden"))
+				|| tag.getAttribute("id") != null) {
+			System.out.println("getAttribute() failed on " + tag);
+			failures++;
+		}
+		// As the original HTMLTag printed it: its pattern read the href value
+		// up to the last double quote
+		if (!tag.toString().equals("<a href=\"x.html\" title='say \"hi\" ' width = 10 hidden>")) {
+			System.out.println("toString() returned " + tag);
+			failures++;
+		}
+
+		// Printed by the original HTMLTag, for text its attribute pattern
+		// read as name="value" or as bare names
+		String[][] printed = {
+			{"p a=\" \"", "<p a=\" \">"},
+			{"p a=\"   \"", "<p a=\" \">"},
+			{"p a=\" x\"", "<p a=\"x\">"},
+			{"p a=\"x \"", "<p a=\"x \">"},
+			{"p a=\"\t\tx y\"", "<p a=\"x y\">"},
+			{"p a =\"x\"", "<p a=\"x\">"},
+			{"p a=\"\"", "<p a=\"\">"},
+			{"p a=\"x'y\"", "<p a=\"x'y\">"},
+			{"p a=\" x\" hidden id=\"y\"", "<p a=\"x\" hidden id=\"y\">"},
+			{"p a b c", "<p a b c>"},
+			{"p b=", "<p b=>"},
+			{"p b =", "<p b =>"},
+		};
+		for (String[] text : printed) {
+			failures += checkPrinted(text[0], text[1]);
+		}
+		// The original pattern did not read these as values, so they are
+		// printed as written. attributes() reads them, and Attribute's
+		// toString escapes a value holding both kinds of quote.
+		failures += checkPrinted("x a = \" b \"", "<x a = \" b \">");
+		failures += checkPrinted("p a=' y'", "<p a=' y'>");
+		failures += checkPrinted("p a=x\"y'z", "<p a=x\"y'z>");
+		if (!new HTMLTag.Attribute("a", "x\"y'z").toString().equals("a=\"x&quot;y'z\"")) {
+			System.out.println("Attribute.toString() did not escape a double quote");
+			failures++;
+		}
+		return failures;
+	}
+
+	private static int checkPrinted(String text, String expected) {
+		HTMLTag tag = new HTMLTag(text, HTMLTagType.OPENING);
+		if (!tag.toString().equals(expected)) {
+			System.out.println("HTMLTag printed " + tag + " from " + text + " instead of " + expected);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks that every parser fails with MALFORMED at the '<' of a tag
+	 * with nothing but whitespace inside it.
+	 */
+	private static int checkUnnamed() {
+		String[][] pages = {
+			{"<\t>", "MALFORMED at 0"},
+			{"</\r>", "MALFORMED at 0"},
+			{"<p>a</\r\r>", "opening <p>", "text a", "MALFORMED at 4"},
+			{"<b>x< \f / >", "opening <b>", "text x", "MALFORMED at 4"},
+		};
+		int failures = 0;
+		for (String[] page : pages) {
+			List<String> expected = List.of(page).subList(1, page.length);
+			for (HTMLParserMode mode : HTMLParserMode.values()) {
+				failures += check("unnamed/" + mode, page[0], expected, mode.parser(page[0]));
+			}
+			failures += check("unnamed/streaming", page[0], expected,
+					new HTMLTokenizer(new StringReader(page[0]), 1));
+			failures += check("unnamed/bytes", page[0], expected,
+					HTMLByteTokenizer.parser(ByteBuffer.wrap(page[0].getBytes(StandardCharsets.UTF_8)),
+							ParseLimits.UNLIMITED));
+			failures += check("unnamed/PARALLEL", page[0], expected,
+					new ParallelParser(page[0], ForkJoinPool.commonPool(), 2));
+			HTMLCursor cursor = new HTMLCursor(page[0]);
+			List<String> read = new ArrayList<>();
+			try {
+				while (cursor.nextToken() != null) {
+					read.add(cursor.type().toString());
+				}
+			} catch (HTMLParseException e) {
+				read.add(e.getReason() + " at " + e.getPosition());
+			}
+			if (!read.get(read.size() - 1).equals(expected.get(expected.size() - 1))) {
+				System.out.println("The cursor read " + read + " from " + page[0]);
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that DelimiterScanner finds the first delimiter inside random
+	 * ranges, and nothing past their ends, in Strings, chars and bytes.
+	 */
+	private static int checkScanner() {
+		int failures = 0;
+		Random random = new Random(23);
+		for (int i = 0; i < 2000; i++) {
+			char[] chars = new char[random.nextInt(100)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = random.nextInt(8) == 0 ? '<' : 'a';
+			}
+			String text = new String(chars);
+			byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+			int from = random.nextInt(chars.length + 1);
+			int to = from + random.nextInt(chars.length - from + 1);
+			int expected = -1;
+			for (int j = from; j < to && expected < 0; j++) {
+				expected = chars[j] == '<' ? j : -1;
+			}
+			if (DelimiterScanner.indexOf(text, '<', from, to) != expected
+					|| DelimiterScanner.indexOf(chars, '<', from, to) != expected
+					|| DelimiterScanner.indexOf(bytes, (byte) '<', from, to) != expected) {
+				System.out.println("DelimiterScanner differs on " + text + " from " + from + " to " + to);
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that the REGEX parser ends content where the closing tag
+	 * patterns it used to run would have, on random runs of closing tag
+	 * syntax after an opening tag and after a script tag.
+	 */
+	private static int checkClosingTags() {
+		Pattern close = Pattern.compile("<\\s*/\\s*(?<tagData>[^>]+)\\s*>");
+		Pattern script = Pattern.compile("<\\s*/\\s*script\\s*>");
+		String[] fragments = {"<", "/", ">", " ", "\t", "x", "script", "SCRIPT", "</", "</ >"};
+		int failures = 0;
+		Random random = new Random(16);
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder rest = new StringBuilder("a");
+			for (int j = random.nextInt(12); j > 0; j--) {
+				rest.append(fragments[random.nextInt(fragments.length)]);
+			}
+			for (String open : new String[] {"<p>", "<script>"}) {
+				String page = open + rest;
+				Matcher m = (open.equals("<p>") ? close : script).matcher(page);
+				String expected = m.find(open.length()) ? page.substring(open.length(), m.start()) : null;
+
+				String actual;
+				try {
+					HTMLParser parser = new HTMLParser(page);
+					parser.next();
+					actual = parser.next().getContents();
+				} catch (HTMLParseException e) {
+					actual = null;
+				}
+				if (expected == null ? actual != null : !expected.equals(actual)) {
+					System.out.println("Content ends at the wrong closing tag in: " + page);
+					System.out.println("  expected " + expected);
+					System.out.println("  actual   " + actual);
+					failures++;
+				}
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that limits generous enough for a page change nothing, and
+	 * that every way of parsing fails for the same reason on a page that
+	 * breaks one.
+	 */
+	private static int checkLimits() {
+		int failures = 0;
+		for (String page : corpus()) {
+			List<String> expected = tags(HTMLParserMode.REGEX.parser(page));
+			for (HTMLParserMode mode : HTMLParserMode.values()) {
+				failures += check(mode + "/DEFAULT", page, expected, mode.parser(page, ParseLimits.DEFAULT));
+			}
+		}
+
+		String text = "a".repeat(100);
+		failures += checkLimit("<p>" + text + "</p>", new ParseLimits(16, 100, 100, 0),
+				HTMLParseException.Reason.TOKEN_TOO_LONG);
+		failures += checkLimit("<p " + text + ">x</p>", new ParseLimits(16, 100, 100, 0),
+				HTMLParseException.Reason.TOKEN_TOO_LONG);
+		failures += checkLimit("<p>x</p><!--" + text, new ParseLimits(16, 100, 100, 0),
+				HTMLParseException.Reason.TOKEN_TOO_LONG);
+		failures += checkLimit("<a><b><br><c></c><c><d>x</d></c></b></a>", new ParseLimits(16, 3, 100, 0),
+				HTMLParseException.Reason.TOO_DEEP);
+		failures += checkLimit("<p>x</p>".repeat(3), new ParseLimits(16, 100, 8, 0),
+				HTMLParseException.Reason.TOO_MANY_TOKENS);
+		failures += checkLimit("<p>x</p>" + text, ParseLimits.DEFAULT,
+				HTMLParseException.Reason.MALFORMED);
+		// The closing tag pattern used to take cubic time to fail on this,
+		// and ran out of time under the default limits
+		failures += checkLimit("<p>a>b</" + " ".repeat(10_000) + "x", ParseLimits.DEFAULT,
+				HTMLParseException.Reason.MALFORMED);
+
+		String large = "<p>x</p>".repeat(1_000_000);
+		failures += checkLimit(large, new ParseLimits(16, 100, Long.MAX_VALUE, 1),
+				HTMLParseException.Reason.TIMEOUT);
+		return failures;
+	}
+
+	/**
+	 * Checks that every way of parsing the page under the given limits
+	 * fails for the given reason.
+	 */
+	private static int checkLimit(String page, ParseLimits limits, HTMLParseException.Reason reason) {
+		int failures = 0;
+		for (HTMLParserMode mode : HTMLParserMode.values()) {
+			failures += checkLimit(page, limits, reason, mode.parser(page, limits));
+		}
+		failures += checkLimit(page, limits, reason, new ParallelParser(page, ForkJoinPool.commonPool(), 3, limits));
+		HTMLTokenizer streaming = new HTMLTokenizer(new StringReader(page), 4);
+		streaming.setLimits(limits);
+		failures += checkLimit(page, limits, reason, streaming);
+		failures += checkLimit(page, limits, reason,
+				HTMLByteTokenizer.parser(ByteBuffer.wrap(page.getBytes(StandardCharsets.UTF_8)), limits));
+		try {
+			TokenBuffer.parse(page, limits);
+			System.out.println("TokenBuffer.parse did not fail on: " + page);
+			failures++;
+		} catch (HTMLParseException e) {
+			if (e.getReason() != reason) {
+				System.out.println("TokenBuffer.parse failed with " + e.getReason() + " on: " + page);
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	private static int checkLimit(String page, ParseLimits limits, HTMLParseException.Reason reason,
+			Iterator<HTMLTag> parser) {
+		List<String> actual = tags(parser);
+		String last = actual.isEmpty() ? "" : actual.get(actual.size() - 1);
+		if (!last.startsWith(reason + " ")) {
+			System.out.println(parser.getClass().getSimpleName() + " did not fail with " + reason
+					+ " under " + limits + " on: " + page.substring(0, Math.min(page.length(), 80)));
+			System.out.println("  actual   " + actual);
+			return 1;
+		}
+		return 0;
+	}
+
+	static int check(String name, String page, List<String> expected, Iterator<HTMLTag> parser) {
+		return check(name, page, expected, tags(parser));
+	}
+
+	static int check(String name, String page, List<String> expected, List<String> actual) {
+		if (!expected.equals(actual)) {
+			System.out.println(name + " differs on: " + page);
+			System.out.println("  expected " + expected);
+			System.out.println("  actual   " + actual);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Describes every tag the parser produces, stopping at the first null
+	 * tag or exception since the parser cannot make progress after one.
+	 */
+	static List<String> tags(Iterator<HTMLTag> parser) {
+		List<String> result = new ArrayList<>();
+		try {
+			while (parser.hasNext()) {
+				HTMLTag tag = parser.next();
+				if (tag == null) {
+					result.add("null");
+					break;
+				}
+				result.add(describe(tag));
+			}
+		} catch (HTMLParseException e) {
+			result.add(e.getReason() + " at " + e.getPosition());
+		} catch (RuntimeException e) {
+			result.add(e.getClass().getSimpleName());
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the position from a failure at the end of the given tags, for
+	 * comparing parsers that count positions in different units.
+	 */
+	static List<String> withoutPosition(List<String> tags) {
+		List<String> result = new ArrayList<>(tags);
+		int last = result.size() - 1;
+		if (last >= 0 && result.get(last).matches("[A-Z_]+ at \\d+")) {
+			result.set(last, result.get(last).substring(0, result.get(last).indexOf(" at ")));
+		}
+		return result;
+	}
+
+	static String describe(HTMLTag tag) {
+		String type = tag.isOpening() ? "opening" : tag.isClosing() ? "closing"
+				: tag.isSelfClosing() ? "self-closing" : "text";
+		return type + " " + tag;
+	}
+}
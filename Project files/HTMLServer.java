@@ -0,0 +1,249 @@
+package edu.caltech.cs2.project03;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the parser over HTTP, so that many pages can be repaired by one
+ * long-running JVM. Every endpoint takes a page as the UTF-8 body of a
+ * POST and streams it through HTMLTokenizer, so neither the page nor the
+ * result is ever held whole:
+ *
+ *   POST /parse   the tags of the page, one per line
+ *   POST /fix     the page repaired by HTMLFixer
+ *   POST /print   the page repaired and pretty-printed like
+ *                 HTMLManager.toString
+ *
+ * Pages are parsed under ParseLimits, and failures come back as status
+ * codes with the message as the body: 405 for anything but a POST, 413
+ * for a page over the size limits, 422 for a page that cannot be parsed
+ * and 503 for one that times out. The first OUTPUT_BUFFER chars of a
+ * response are held back so that failures within them still get a status
+ * code; a failure after that ends the response without its last chunk.
+ *
+ * Each request runs on its own thread: a virtual thread where the JDK
+ * has them, and otherwise a thread from a cached pool.
+ *
+ * main() turns on TCP_NODELAY for the JVM's HTTP servers; a program that
+ * creates an HTMLServer itself should set sun.net.httpserver.nodelay to
+ * true before creating it, or each response may wait about 40 ms.
+ *
+ * Run with an optional port, 8080 by default.
+ */
+public class HTMLServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int OUTPUT_BUFFER = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ParseLimits limits;
+
+    public static void main(String[] args) throws IOException {
+        useNoDelay();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        HTMLServer server = new HTMLServer(new InetSocketAddress(port), ParseLimits.DEFAULT);
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    /**
+     * Creates a server bound to the given address, which may have port 0
+     * to pick any free port, that parses pages under the given limits. If
+     * the limits are null, throws an IllegalArgumentException.
+     */
+    public HTMLServer(InetSocketAddress address, ParseLimits limits) throws IOException {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.limits = limits;
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/parse", exchange -> handle(exchange, HTMLCommand.TOKENS));
+        this.server.createContext("/fix", exchange -> handle(exchange, HTMLCommand.FIX));
+        this.server.createContext("/print", exchange -> handle(exchange, HTMLCommand.PRETTY));
+    }
+
+    /**
+     * Turns on TCP_NODELAY for every HttpServer in this JVM, unless the
+     * sun.net.httpserver.nodelay property was already set. Without it, a
+     * response written as headers and then body waits out the client's
+     * delayed ACK, about 40 ms per request. The JDK reads the property
+     * once, when its first server is created, so this must be called
+     * before that. Programs that embed HTMLServer decide for themselves.
+     */
+    static void useNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread if
+     * the JDK supports them, or else on a cached platform thread.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given number of seconds
+     * for the ones in progress, then stops the request threads.
+     */
+    public void stop(int delay) {
+        this.server.stop(delay);
+        this.executor.shutdown();
+    }
+
+    /**
+     * Returns the address the server is bound to, with the actual port
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange, HTMLCommand command) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendError(exchange, 405, "Only POST is supported");
+            return;
+        }
+
+        ResponseWriter out = new ResponseWriter(exchange);
+        int status;
+        String message;
+        try {
+            HTMLTokenizer tags = new HTMLTokenizer(exchange.getRequestBody());
+            tags.setLimits(this.limits);
+            command.write(tags, out);
+            out.close();
+            exchange.close();
+            return;
+        } catch (HTMLParseException e) {
+            status = status(e.getReason());
+            message = e.getMessage();
+        } catch (UncheckedIOException e) {
+            status = 400;
+            message = e.getMessage();
+        }
+
+        if (out.isCommitted()) {
+            // Leaving the exception to the server drops the connection,
+            // so the client never sees the end of the response
+            throw new IOException(message);
+        }
+        sendError(exchange, status, message);
+    }
+
+    /**
+     * Returns the status code for a page that failed for the given reason
+     */
+    private static int status(HTMLParseException.Reason reason) {
+        return switch (reason) {
+            case TOKEN_TOO_LONG, TOO_DEEP, TOO_MANY_TOKENS -> 413;
+            case TIMEOUT -> 503;
+            default -> 422;
+        };
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    /**
+     * Holds back the first OUTPUT_BUFFER chars of a successful response.
+     * If the response ends within them it is sent with its length;
+     * otherwise it is committed with status 200 and the rest is streamed.
+     */
+    private static class ResponseWriter extends Writer {
+        private final HttpExchange exchange;
+        private final StringBuilder held = new StringBuilder();
+        private Writer body;
+
+        ResponseWriter(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean isCommitted() {
+            return this.body != null;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (this.body != null) {
+                this.body.write(cbuf, off, len);
+                return;
+            }
+            this.held.append(cbuf, off, len);
+            if (this.held.length() > OUTPUT_BUFFER) {
+                commit(0);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (this.body != null) {
+                this.body.write(str, off, len);
+                return;
+            }
+            this.held.append(str, off, off + len);
+            if (this.held.length() > OUTPUT_BUFFER) {
+                commit(0);
+            }
+        }
+
+        /**
+         * Sends the headers with the given length, 0 for chunked, and
+         * writes out what was held back
+         */
+        private void commit(long length) throws IOException {
+            this.exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            this.exchange.sendResponseHeaders(200, length);
+            this.body = new BufferedWriter(
+                    new OutputStreamWriter(this.exchange.getResponseBody(), StandardCharsets.UTF_8));
+            this.body.append(this.held);
+            this.held.setLength(0);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.body != null) {
+                this.body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.body == null) {
+                byte[] bytes = this.held.toString().getBytes(StandardCharsets.UTF_8);
+                this.exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                this.exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+                this.exchange.getResponseBody().write(bytes);
+                this.body = Writer.nullWriter();
+            }
+            this.body.close();
+        }
+    }
+}
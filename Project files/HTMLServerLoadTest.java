@@ -0,0 +1,159 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends generated pages to an HTMLServer from many clients at once and
+ * reports throughput, latency percentiles and failed requests. Without
+ * --url, starts a server on a free localhost port first.
+ *
+ * Arguments, all optional:
+ *   --url URL          the server to load (default: start one here)
+ *   --endpoint NAME    parse, fix or print (default print)
+ *   --profile NAME     the CorpusProfile of the pages (default MIXED)
+ *   --size N[K|M|G]    chars per page (default 16K)
+ *   --pages N          distinct pages to send in turn (default 32)
+ *   --clients N        requests in flight at once (default 8)
+ *   --requests N       requests in all, after warming up (default 2000)
+ */
+public class HTMLServerLoadTest {
+    private String url;
+    private String endpoint = "print";
+    private CorpusProfile profile = CorpusProfile.MIXED;
+    private long size = 16 * 1024;
+    private int pages = 32;
+    private int clients = 8;
+    private int requests = 2000;
+
+    public static void main(String[] args) throws Exception {
+        HTMLServer.useNoDelay();
+        new HTMLServerLoadTest(args).run();
+    }
+
+    /**
+     * Creates a load test configured by the given command line arguments.
+     * If an argument is not understood, throws an IllegalArgumentException.
+     */
+    public HTMLServerLoadTest(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[i + 1];
+            switch (arg) {
+                case "--url" -> this.url = value;
+                case "--endpoint" -> this.endpoint = value;
+                case "--profile" -> this.profile = CorpusProfile.valueOf(value.toUpperCase());
+                case "--size" -> this.size = LoadTestDriver.parseSize(value);
+                case "--pages" -> this.pages = Integer.parseInt(value);
+                case "--clients" -> this.clients = Integer.parseInt(value);
+                case "--requests" -> this.requests = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (this.size < 0 || this.size > Integer.MAX_VALUE - 1024
+                || this.pages < 1 || this.clients < 1 || this.requests < 1) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Runs the load test and prints the results
+     */
+    public void run() throws Exception {
+        HTMLServer server = null;
+        String base = this.url;
+        if (base == null) {
+            server = new HTMLServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ParseLimits.DEFAULT);
+            server.start();
+            base = "http://localhost:" + server.getAddress().getPort();
+        }
+        URI target = URI.create(base.replaceAll("/+$", "") + "/" + this.endpoint);
+
+        String[] bodies = new String[this.pages];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = CorpusGenerator.generate(this.profile, i, (int) this.size);
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService pool = Executors.newFixedThreadPool(this.clients);
+        try {
+            System.out.printf("%d requests of %,d chars to %s from %d clients%n",
+                    this.requests, this.size, target, this.clients);
+
+            // Warm up the server and the client before timing anything
+            send(client, pool, target, bodies, Math.min(this.requests, 200));
+
+            long start = System.nanoTime();
+            long[] latencies = send(client, pool, target, bodies, this.requests);
+            long nanos = System.nanoTime() - start;
+
+            int failed = 0;
+            for (long latency : latencies) {
+                if (latency < 0) {
+                    failed++;
+                }
+            }
+            long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+            System.out.printf("%.1f requests/s  %.1f MB/s  failed %d%n",
+                    this.requests / (nanos / 1e9), this.requests * (double) this.size / (nanos / 1e9) / 1e6, failed);
+            if (succeeded.length > 0) {
+                System.out.printf("p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  max %.2f ms%n",
+                        LoadTestDriver.percentile(succeeded, 50), LoadTestDriver.percentile(succeeded, 90),
+                        LoadTestDriver.percentile(succeeded, 99), succeeded[succeeded.length - 1] / 1e6);
+            }
+        } finally {
+            pool.shutdown();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    /**
+     * Sends the given number of requests, cycling through the bodies, and
+     * returns the latency of each in nanoseconds, or -1 for each that
+     * failed.
+     */
+    private long[] send(HttpClient client, ExecutorService pool, URI target, String[] bodies, int count)
+            throws Exception {
+        long[] latencies = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int c = 0; c < this.clients; c++) {
+            workers.add(pool.submit(() -> {
+                for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                    HttpRequest request = HttpRequest.newBuilder(target)
+                            .POST(HttpRequest.BodyPublishers.ofString(bodies[i % bodies.length]))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = response.statusCode() == 200 ? System.nanoTime() - start : -1;
+                    } catch (IOException e) {
+                        latencies[i] = -1;
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        return latencies;
+    }
+}
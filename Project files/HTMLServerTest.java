@@ -0,0 +1,98 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Checks every endpoint of HTMLServer against HTMLManager.
+ */
+public class HTMLServerTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		HTMLServer.useNoDelay();
+		try {
+			failures += checkServer();
+		} catch (IOException | InterruptedException e) {
+			System.out.println("Could not reach the server: " + e);
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks every endpoint of a server on localhost against HTMLManager,
+	 * and the status codes for pages that fail.
+	 */
+	private static int checkServer() throws IOException, InterruptedException {
+		HTMLServer server = new HTMLServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				ParseLimits.DEFAULT);
+		server.start();
+		try {
+			HttpClient client = HttpClient.newHttpClient();
+			String base = "http://localhost:" + server.getAddress().getPort();
+			int failures = 0;
+
+			// The large page is streamed back in chunks
+			for (String page : new String[] {"<div><p>a<b>b</div>c</p>", CorpusGenerator.repeatedPage(1024 * 1024)}) {
+				HTMLManager manager = new HTMLManager(TokenBuffer.parse(page));
+				StringBuilder parsed = new StringBuilder();
+				for (HTMLTag tag : manager.getTags()) {
+					parsed.append(tag).append('\n');
+				}
+				manager.fixHTML();
+				StringBuilder fixed = new StringBuilder();
+				for (HTMLTag tag : manager.getTags()) {
+					fixed.append(tag);
+				}
+				failures += checkResponse(client, base + "/parse", page, 200, parsed.toString());
+				failures += checkResponse(client, base + "/fix", page, 200, fixed.toString());
+				failures += checkResponse(client, base + "/print", page, 200, manager.toString());
+			}
+
+			failures += checkResponse(client, base + "/fix", "<p>x</p>trailing", 422, null);
+			failures += checkResponse(client, base + "/parse", "<p>a</\r\r>", 422, null);
+			failures += checkResponse(client, base + "/fix", "<div>".repeat(5000), 413, null);
+			HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/fix")).GET().build(),
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 405) {
+				System.out.println("GET /fix returned " + response.statusCode());
+				failures++;
+			}
+
+			// Once the response has started, a failure cuts it short
+			try {
+				String page = CorpusGenerator.repeatedPage(1024 * 1024) + "trailing";
+				response = client.send(HttpRequest.newBuilder(URI.create(base + "/print"))
+						.POST(HttpRequest.BodyPublishers.ofString(page)).build(), HttpResponse.BodyHandlers.ofString());
+				System.out.println("A failure after the response started returned " + response.statusCode());
+				failures++;
+			} catch (IOException e) {
+				// Expected
+			}
+			return failures;
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static int checkResponse(HttpClient client, String url, String page, int status, String expected)
+			throws IOException, InterruptedException {
+		HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+				.POST(HttpRequest.BodyPublishers.ofString(page)).build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != status || (expected != null && !expected.equals(response.body()))) {
+			System.out.println(url + " returned " + response.statusCode() + " on: "
+					+ page.substring(0, Math.min(page.length(), 80)));
+			return 1;
+		}
+		return 0;
+	}
+}
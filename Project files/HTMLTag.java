@@ -1,79 +1,150 @@
 package edu.caltech.cs2.project03;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /** An HTMLTag object represents an HTML tag, such as <b> or </table>. */
 public class HTMLTag {
-    private static final Set<String> SELF_CLOSING_TAGS =
-        new HashSet<String>(Arrays.asList(
-            "!doctype", "area", "base", "basefont", "br",
-            "col", "command", "embed", "hr", "img", "input",
-            "keygen", "link", "meta", "param", "wbr", "track", "?xml")
-    );
-
-
-    private record Attribute(String key, String value) {
+    /**
+     * A single attribute of a tag, such as href="index.html". The value is
+     * null for attributes written without one, such as hidden.
+     */
+    public record Attribute(String key, String value) {
+        /**
+         * Returns this attribute as name="value". The value is put in
+         * double quotes, or in single quotes if it holds a double quote;
+         * if it holds both, its double quotes are written as &quot;.
+         */
         public String toString() {
-            return key + (value != null ? "=\"" + value + "\"" : "");
+            if (value == null) {
+                return key;
+            } else if (value.indexOf('"') < 0) {
+                return key + "=\"" + value + '"';
+            } else if (value.indexOf('\'') < 0) {
+                return key + "='" + value + '\'';
+            }
+            return key + "=\"" + value.replace("\"", "&quot;") + '"';
         }
+    }
 
+    /**
+     * A range of the bytes of a page, left undecoded until it is first
+     * read. HTMLByteTokenizer keeps the text of its tags this way.
+     */
+    record Encoded(byte[] bytes, int from, int to, Charset charset) {
+        String decode() {
+            return new String(this.bytes, this.from, this.to - this.from, this.charset);
+        }
     }
 
     public final String element;
-    private final String contents;
+    private final int elementId;
+    private String contents;
     private final HTMLTagType type;
-    private final List<Attribute> attributes;
+    private String attributeText;
+    private final Encoded encoded;
+    private List<Attribute> attributes;
     public static final String INDENT_STRING = "    "; 
 
     /** 
      * Constructs an HTML tag with the given element (e.g. "table"), type
      * and content as internal content.
+     *
+     * Only the element name is read here. The rest of the tag is kept as
+     * text and split into attributes the first time they are needed.
      */
     private HTMLTag(String element, HTMLTagType type, String contents) {
         if (type == HTMLTagType.COMMENT || type == HTMLTagType.CONTENT) {
             this.type = type;
             this.contents = element;
             this.element = null;
-            this.attributes = new ArrayList<>();
+            this.elementId = HTMLElementTable.NONE;
+            this.attributeText = "";
+            this.encoded = null;
+            this.attributes = List.of();
             return;
         }
 
         this.contents = null;
+        this.encoded = null;
 
         element = element.trim().replace("\r", "");
+        if (element.isEmpty()) {
+            throw new IllegalArgumentException("Tag has no element name.");
+        }
 
-        Pattern TAG_NAME = Pattern.compile("^(\\S+)");
-        Matcher m = TAG_NAME.matcher(element.trim());
-        boolean b = m.find(); 
-        this.element = m.group();
-        element = m.replaceFirst("").trim();
+        int nameEnd = 0;
+        while (nameEnd < element.length() && !AttributeScanner.isSpace(element.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        this.element = element.substring(0, nameEnd);
+        this.elementId = HTMLElementTable.id(this.element);
+        this.attributeText = element.substring(nameEnd).trim();
 
-        if (SELF_CLOSING_TAGS.contains(this.element.toLowerCase())) {
+        if (HTMLElementTable.isSelfClosing(this.elementId)) {
             this.type = HTMLTagType.SELF_CLOSING; 
         }
         else {
             this.type = type;
         }
+    }
 
-        this.attributes = new ArrayList<>();
-        Pattern ATTRIBUTE_PATTERN = Pattern.compile("^(\\S+)\\s*=\"\\s*(([^\"]|\\\")+)\"");
-        while (!element.isEmpty()) {
-            m = ATTRIBUTE_PATTERN.matcher(element.trim());
-            if (m.find()) {
-                this.attributes.add(new Attribute(m.group(1), m.group(2)));
-            }
-            else {
-                m = TAG_NAME.matcher(element.trim());
-                m.find();
-                this.attributes.add(new Attribute(m.group(0), null));
-            }
+    /**
+     * Splits the given attribute text into attributes with AttributeScanner
+     */
+    private static List<Attribute> parseAttributes(String text) {
+        List<Attribute> result = new ArrayList<>();
+        AttributeScanner.split(text.toCharArray(), 0, text.length(),
+                (keyStart, keyEnd, valueStart, valueEnd) -> result.add(new Attribute(
+                        text.substring(keyStart, keyEnd),
+                        valueStart < 0 ? null : text.substring(valueStart, valueEnd))));
+        return List.copyOf(result);
+    }
 
-            element = m.replaceFirst("").trim();
+    /**
+     * Returns the attributes of this tag in the order they were written.
+     * Comments, content and closing tags written without attributes return
+     * an empty list.
+     */
+    public List<Attribute> attributes() {
+        List<Attribute> result = this.attributes;
+        if (result == null) {
+            long start = HTMLInstrumentation.start();
+            result = parseAttributes(attributeText());
+            this.attributes = result;
+            HTMLInstrumentation.phase(HTMLMetrics.Phase.ATTRIBUTES, start);
+        }
+        return result;
+    }
 
+    /**
+     * Returns the text of this tag after its element name, less any '\r'
+     * and surrounding whitespace, decoding it first if it is still bytes.
+     * Comments, content and tags without attributes return "".
+     */
+    String attributeText() {
+        String result = this.attributeText;
+        if (result == null) {
+            result = this.encoded.decode().replace("\r", "");
+            this.attributeText = result;
         }
+        return result;
+    }
+
+    /**
+     * Returns the value of the first attribute with the given name, ignoring
+     * case, or null if there is none. An attribute written without a value
+     * returns an empty String.
+     */
+    public String getAttribute(String name) {
+        for (Attribute attribute : attributes()) {
+            if (attribute.key().equalsIgnoreCase(name)) {
+                return attribute.value() == null ? "" : attribute.value();
+            }
+        }
+        return null;
     }
 
     /** 
@@ -85,14 +156,109 @@ public class HTMLTag {
 
     public HTMLTag(HTMLTagType type, String contents) {
         this.element = null;
-        this.attributes = new ArrayList<>();
+        this.elementId = HTMLElementTable.NONE;
+        this.attributeText = "";
+        this.encoded = null;
+        this.attributes = List.of();
         this.type = type;
         this.contents = contents;
     }
 
+    /**
+     * Constructs a tag of the given type for the same element as the given
+     * tag, without reading the element name again.
+     */
+    private HTMLTag(HTMLTag tag, HTMLTagType type) {
+        this.element = tag.element;
+        this.elementId = tag.elementId;
+        this.contents = null;
+        this.attributeText = "";
+        this.encoded = null;
+        this.attributes = List.of();
+        this.type = HTMLElementTable.isSelfClosing(this.elementId) ? HTMLTagType.SELF_CLOSING : type;
+    }
+
+    /**
+     * Constructs a tag with the given element, its HTMLElementTable ID,
+     * type and attribute text, as attributeText returns it, without
+     * reading any of it. The type is used as given.
+     */
+    HTMLTag(String element, int elementId, HTMLTagType type, String attributeText) {
+        this.element = element;
+        this.elementId = elementId;
+        this.contents = null;
+        this.attributeText = attributeText;
+        this.encoded = null;
+        this.attributes = null;
+        this.type = type;
+    }
+
+    /**
+     * Constructs a comment or content tag of the given type whose text is
+     * decoded from the given bytes the first time it is read.
+     */
+    HTMLTag(HTMLTagType type, Encoded contents) {
+        this.element = null;
+        this.elementId = HTMLElementTable.NONE;
+        this.attributeText = "";
+        this.encoded = contents;
+        this.attributes = List.of();
+        this.type = type;
+        this.contents = null;
+    }
+
+    /**
+     * Constructs a tag with the given element, its HTMLElementTable ID and
+     * type, whose attribute text is decoded from the given bytes, less any
+     * '\r', the first time the attributes are read. The type is used as
+     * given.
+     */
+    HTMLTag(String element, int elementId, HTMLTagType type, Encoded attributeText) {
+        this.element = element;
+        this.elementId = elementId;
+        this.contents = null;
+        this.attributeText = attributeText == null ? "" : null;
+        this.encoded = attributeText;
+        this.attributes = null;
+        this.type = type;
+    }
+
     public String getElement() {
         return this.element;
     }
+
+    public HTMLTagType getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the text of a comment or content, or null for other tags
+     * unless they were made with HTMLTag(HTMLTagType, String).
+     */
+    String getContents() {
+        return contents();
+    }
+
+    /**
+     * Returns the contents, decoding them first if they are still bytes.
+     * Two threads may both decode them, but both store the same text.
+     */
+    private String contents() {
+        String result = this.contents;
+        if (result == null && this.element == null && this.encoded != null) {
+            result = this.encoded.decode();
+            this.contents = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the HTMLElementTable ID of this tag's element, which is
+     * HTMLElementTable.NONE for comments and content.
+     */
+    public int getElementId() {
+        return this.elementId;
+    }
     
     /** 
      * Returns true if this HTML tag is an "opening" (starting) tag.
@@ -150,6 +316,9 @@ public class HTMLTag {
      * pre: If other is null, this method will throw a NullPointerException
      */
     public boolean matchEquals(HTMLTag other) {
+        if (this.elementId != HTMLElementTable.UNKNOWN && other.elementId != HTMLElementTable.UNKNOWN) {
+            return this.elementId == other.elementId;
+        }
         return (this.element == null && other.element == null) || (this.element != null && this.element.equalsIgnoreCase(other.element));
     }
 
@@ -164,12 +333,36 @@ public class HTMLTag {
         HTMLTag other = (HTMLTag) obj;
 
         boolean typeEqual = (this.type == other.type);
-        boolean elementEqual = (this.element == null && other.element == null) || (this.element != null && this.element.equalsIgnoreCase(other.element));
-        boolean contentEqual = (this.contents == null && other.contents == null) || (this.contents != null && this.contents.equalsIgnoreCase(other.contents));
-        boolean attributesEqual = (this.attributes.equals(other.attributes));
+        boolean elementEqual = this.matchEquals(other);
+        String contents = this.contents();
+        String otherContents = other.contents();
+        boolean contentEqual = (contents == null && otherContents == null) || (contents != null && contents.equalsIgnoreCase(otherContents));
+        boolean attributesEqual = (this.attributes().equals(other.attributes()));
         return typeEqual && elementEqual && contentEqual && attributesEqual;
     }
 
+    /**
+     * Returns a hash code consistent with equals, which ignores the case of
+     * the element and contents.
+     */
+    @Override
+    public int hashCode() {
+        int elementHash = this.elementId != HTMLElementTable.UNKNOWN
+                ? this.elementId : hashIgnoreCase(this.element);
+        return Objects.hash(this.type, elementHash, hashIgnoreCase(this.contents()), this.attributes());
+    }
+
+    private static int hashIgnoreCase(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + HTMLElementTable.fold(s.charAt(i));
+        }
+        return hash;
+    }
+
     /** 
      * Returns a tag that matches this tag, and has the same element.
      * 
@@ -177,11 +370,11 @@ public class HTMLTag {
      */
     public HTMLTag getMatching() {
         if (this.type == HTMLTagType.SELF_CLOSING) {
-            return new HTMLTag(this.element, HTMLTagType.SELF_CLOSING);
+            return new HTMLTag(this, HTMLTagType.SELF_CLOSING);
         } else if (this.type == HTMLTagType.OPENING) {
-            return new HTMLTag(this.element, HTMLTagType.CLOSING);
+            return new HTMLTag(this, HTMLTagType.CLOSING);
         } else if (this.type == HTMLTagType.CLOSING) {
-            return new HTMLTag(this.element, HTMLTagType.OPENING);
+            return new HTMLTag(this, HTMLTagType.OPENING);
         } 
         else {
             return null;
@@ -192,27 +385,47 @@ public class HTMLTag {
      * Returns a string representation of this HTML tag, such as "</table>". 
      */
     public String toString() {
-        boolean hasAttributes = this.attributes.size() > 0;
-        String attr = (hasAttributes ? " " + String.join(" ", (List<String>)(this.attributes.stream().map(Attribute::toString).collect(Collectors.toList()))) : "");
-        String contents = this.contents == null ? "" : this.contents;
+        StringBuilder result = new StringBuilder();
+        try {
+            this.appendTo(result);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
 
+    /**
+     * Writes the string representation of this HTML tag to the given
+     * output, without building it as a String first.
+     */
+    public void appendTo(Appendable out) throws IOException {
         if (this.type == HTMLTagType.COMMENT) {
-            return "<!--" + this.contents +  "-->";
+            out.append("<!--").append(contents()).append("-->");
         } else if (this.type == HTMLTagType.CONTENT) {
-            return this.contents;
+            out.append(contents());
         } else if (this.type == HTMLTagType.OPENING) {
-            return "<" + this.element + attr + ">";
+            out.append('<').append(this.element);
+            appendAttributes(out);
+            out.append('>');
         } else if (this.type == HTMLTagType.CLOSING) {
-            return "</" + this.element + ">" + contents;
+            out.append("</").append(this.element).append('>');
+            if (this.contents != null) {
+                out.append(this.contents);
+            }
         } else if (this.type == HTMLTagType.SELF_CLOSING) {
-            return "<" + this.element + attr + "/>";
+            out.append('<').append(this.element);
+            appendAttributes(out);
+            out.append("/>");
         } else {
-            System.err.println("Invalid Tag Type.");
-            System.exit(1);
-            return null;
+            throw new IllegalStateException("Invalid Tag Type.");
         }
     }
 
+    private void appendAttributes(Appendable out) throws IOException {
+        AttributeScanner.appendAsWritten(attributeText(), out);
+    }
+
      /**
       * Returns a String representation of the tag, with the given indent 
       */
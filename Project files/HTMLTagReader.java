@@ -0,0 +1,299 @@
+package edu.caltech.cs2.project03;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads back the tags written by HTMLTagWriter, one at a time. Over a
+ * ByteBuffer, such as a mapped file, tags are decoded straight from the
+ * buffer without copying it; over an InputStream, a window of the stream
+ * is held at a time.
+ *
+ * Names are decoded once, when they enter the table, and every tag with
+ * that name shares the String. If the data is not a valid stream, throws
+ * an UncheckedIOException wrapping a StreamCorruptedException.
+ */
+public class HTMLTagReader implements Iterator<HTMLTag>, Closeable {
+    private static final HTMLTagType[] TYPES = HTMLTagType.values();
+    private static final int NO_ID = Integer.MIN_VALUE;
+
+    private final InputStream in;
+    private ByteBuffer buf;
+    private byte[] scratch = new byte[256];
+
+    private String[] names = new String[64];
+    private int[] ids = new int[64];
+    private int nameCount;
+    private String literal;
+
+    private HTMLTag next;
+    private boolean ended;
+
+    /**
+     * Creates a reader over the remaining bytes of the given buffer, which
+     * is not copied and whose position is not changed. If the buffer is
+     * null, throws an IllegalArgumentException.
+     */
+    public HTMLTagReader(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException();
+        }
+        this.in = null;
+        this.buf = buffer.slice();
+        readHeader();
+    }
+
+    /**
+     * Creates a reader over the given stream, which is read as tags are
+     * asked for. If the stream is null, throws an IllegalArgumentException.
+     */
+    public HTMLTagReader(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException();
+        }
+        this.in = in;
+        this.buf = ByteBuffer.wrap(new byte[HTMLTagWriter.BUFFER_SIZE]).limit(0);
+        readHeader();
+    }
+
+    /**
+     * Returns a reader over the given file, which is mapped into memory
+     * rather than read unless it is too large to map at once.
+     */
+    public static HTMLTagReader open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() <= Integer.MAX_VALUE) {
+                return new HTMLTagReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        return new HTMLTagReader(new FileInputStream(file));
+    }
+
+    /**
+     * Reads every tag left into a new Queue
+     */
+    public Queue<HTMLTag> readAll() {
+        Queue<HTMLTag> tags = new Queue<>();
+        while (hasNext()) {
+            tags.enqueue(next());
+        }
+        return tags;
+    }
+
+    public boolean hasNext() {
+        if (this.next == null && !this.ended) {
+            this.next = readTag();
+        }
+        return this.next != null;
+    }
+
+    public HTMLTag next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        HTMLTag tag = this.next;
+        this.next = null;
+        return tag;
+    }
+
+    /**
+     * Closes the stream, if the reader is over one
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+    private void readHeader() {
+        for (byte b : HTMLTagWriter.MAGIC) {
+            require(1);
+            if (this.buf.get() != b) {
+                throw corrupt("Not a tag stream");
+            }
+        }
+        int version = readVarint();
+        if (version != HTMLTagWriter.VERSION) {
+            throw corrupt("Unsupported version " + version);
+        }
+    }
+
+    /**
+     * Reads the next record, and returns its tag or null at the end
+     */
+    private HTMLTag readTag() {
+        int header = readVarint();
+        if (header == HTMLTagWriter.END) {
+            this.ended = true;
+            return null;
+        }
+        int type = header & 7;
+        int parts = HTMLTagWriter.HAS_ELEMENT | HTMLTagWriter.HAS_CONTENTS | HTMLTagWriter.HAS_ATTRIBUTES;
+        if (type >= TYPES.length || (header & ~(parts | 7)) != 0) {
+            throw corrupt("Invalid record " + header);
+        }
+
+        String element = null;
+        int elementId = HTMLElementTable.NONE;
+        if ((header & HTMLTagWriter.HAS_ELEMENT) != 0) {
+            int index = readName();
+            element = name(index);
+            elementId = elementId(index);
+        }
+        String contents = null;
+        if ((header & HTMLTagWriter.HAS_CONTENTS) != 0) {
+            contents = readText(readVarint());
+        }
+        String attributes = "";
+        if ((header & HTMLTagWriter.HAS_ATTRIBUTES) != 0) {
+            attributes = readText(readVarint());
+        }
+
+        if (element == null) {
+            if (!attributes.isEmpty()) {
+                throw corrupt("Attributes without an element");
+            }
+            return new HTMLTag(TYPES[type], contents);
+        }
+        if (contents != null) {
+            throw corrupt("Contents with an element");
+        }
+        return new HTMLTag(element, elementId, TYPES[type], attributes);
+    }
+
+    /**
+     * Reads a name, and returns its index in the table, or -1 for a name
+     * written out in full, which is left in literal
+     */
+    private int readName() {
+        int ref = readVarint();
+        if (ref == HTMLTagWriter.LITERAL) {
+            this.literal = readText(readVarint());
+            return -1;
+        }
+        if (ref == HTMLTagWriter.DEFINE) {
+            if (this.nameCount == HTMLTagWriter.MAX_NAMES) {
+                throw corrupt("Too many names");
+            }
+            if (this.nameCount == this.names.length) {
+                this.names = Arrays.copyOf(this.names, 2 * this.nameCount);
+                this.ids = Arrays.copyOf(this.ids, 2 * this.nameCount);
+            }
+            this.names[this.nameCount] = readText(readVarint());
+            this.ids[this.nameCount] = NO_ID;
+            return this.nameCount++;
+        }
+        int index = ref - HTMLTagWriter.FIRST_NAME;
+        if (index >= this.nameCount) {
+            throw corrupt("Undefined name " + index);
+        }
+        return index;
+    }
+
+    private String name(int index) {
+        return index < 0 ? this.literal : this.names[index];
+    }
+
+    /**
+     * Returns the HTMLElementTable ID of the name at the given index,
+     * looking it up only the first time it is used
+     */
+    private int elementId(int index) {
+        if (index < 0) {
+            return HTMLElementTable.id(this.literal);
+        }
+        if (this.ids[index] == NO_ID) {
+            this.ids[index] = HTMLElementTable.id(this.names[index]);
+        }
+        return this.ids[index];
+    }
+
+    /**
+     * Reads the text with the given header, which gives its length and
+     * encoding
+     */
+    private String readText(int header) {
+        int length = header >>> 1;
+        Charset charset = (header & 1) != 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+        require(length);
+        String text;
+        if (this.buf.hasArray()) {
+            text = new String(this.buf.array(), this.buf.arrayOffset() + this.buf.position(), length, charset);
+            this.buf.position(this.buf.position() + length);
+        } else {
+            if (length > this.scratch.length) {
+                this.scratch = new byte[Math.max(length, 2 * this.scratch.length)];
+            }
+            this.buf.get(this.scratch, 0, length);
+            text = new String(this.scratch, 0, length, charset);
+        }
+        return text;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            require(1);
+            byte b = this.buf.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw corrupt("Invalid number");
+    }
+
+    /**
+     * Makes sure at least the given number of bytes are left in the
+     * buffer, reading more of the stream if there is one
+     */
+    private void require(int bytes) {
+        if (this.buf.remaining() >= bytes) {
+            return;
+        }
+        if (this.in == null) {
+            throw corrupt("Unexpected end of data");
+        }
+        if (bytes > this.buf.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, 2 * this.buf.capacity()));
+            larger.put(this.buf);
+            this.buf = larger;
+        } else {
+            this.buf.compact();
+        }
+        try {
+            while (this.buf.position() < bytes) {
+                int read = this.in.read(this.buf.array(), this.buf.position(), this.buf.remaining());
+                if (read < 0) {
+                    throw corrupt("Unexpected end of data");
+                }
+                this.buf.position(this.buf.position() + read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.buf.flip();
+        }
+    }
+
+    private static UncheckedIOException corrupt(String message) {
+        return new UncheckedIOException(new StreamCorruptedException(message));
+    }
+}
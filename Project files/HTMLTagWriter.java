@@ -0,0 +1,231 @@
+package edu.caltech.cs2.project03;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Writes tags to a stream in a compact binary form, which HTMLTagReader
+ * loads back far faster than the page they came from can be parsed. Tags
+ * are written as they are given, so a page can be parsed and written
+ * without holding all of its tags.
+ *
+ * The stream is the bytes "HTMB" and a version, then one record per tag,
+ * then an end record. Every number is an unsigned varint: seven bits per
+ * byte, low bits first, with the high bit set on all but the last byte.
+ * Text is its length in bytes times two, plus one if it is in ISO-8859-1
+ * rather than UTF-8, followed by the bytes. Text whose chars all fit in a
+ * byte is written in ISO-8859-1, which is how the JDK keeps such Strings,
+ * so that reading it back is a plain copy.
+ *
+ * A record starts with its type's ordinal in the low three bits, plus
+ * HAS_ELEMENT, HAS_CONTENTS and HAS_ATTRIBUTES for the parts that follow,
+ * in that order. The end record is just END. The element is a name; the
+ * contents are text; the attributes are the text after the element name,
+ * as written, so that a tag read back prints exactly as it did.
+ *
+ * Element names are kept in a table that the reader builds
+ * up the same way. A name is written as DEFINE and the text the first time
+ * it is seen, which gives it the next index in the table, and as its index
+ * plus FIRST_NAME after that. Once the table holds MAX_NAMES names, new
+ * names are written as LITERAL and the text, and not added.
+ */
+public class HTMLTagWriter implements Closeable, Flushable {
+    static final byte[] MAGIC = {'H', 'T', 'M', 'B'};
+    static final int VERSION = 2;
+
+    static final int END = 7;
+    static final int HAS_ELEMENT = 1 << 3;
+    static final int HAS_CONTENTS = 1 << 4;
+    static final int HAS_ATTRIBUTES = 1 << 5;
+
+    static final int LITERAL = 0;
+    static final int DEFINE = 1;
+    static final int FIRST_NAME = 2;
+    static final int MAX_NAMES = 1 << 16;
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int count;
+    private final HashMap<String, Integer> names = new HashMap<>();
+    private boolean finished;
+
+    /**
+     * Creates a writer that writes to the given stream, starting with the
+     * header. If the stream is null, throws an IllegalArgumentException.
+     */
+    public HTMLTagWriter(OutputStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException();
+        }
+        this.out = out;
+        System.arraycopy(MAGIC, 0, this.buf, 0, MAGIC.length);
+        this.count = MAGIC.length;
+        writeVarint(VERSION);
+    }
+
+    /**
+     * Writes the given tag. If the tag is null, throws an
+     * IllegalArgumentException, and if the stream has been finished, an
+     * IllegalStateException.
+     */
+    public void write(HTMLTag tag) throws IOException {
+        if (tag == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.finished) {
+            throw new IllegalStateException("The stream has been finished.");
+        }
+        String element = tag.getElement();
+        String contents = tag.getContents();
+        String attributes = tag.attributeText();
+
+        int header = tag.getType().ordinal();
+        if (element != null) {
+            header |= HAS_ELEMENT;
+        }
+        if (contents != null) {
+            header |= HAS_CONTENTS;
+        }
+        if (!attributes.isEmpty()) {
+            header |= HAS_ATTRIBUTES;
+        }
+        ensure(5);
+        writeVarint(header);
+
+        if (element != null) {
+            writeName(element);
+        }
+        if (contents != null) {
+            writeText(contents);
+        }
+        if (!attributes.isEmpty()) {
+            writeText(attributes);
+        }
+    }
+
+    /**
+     * Writes every tag left in the given iterator, stopping at the first
+     * null tag.
+     */
+    public void writeAll(Iterator<HTMLTag> tags) throws IOException {
+        while (tags.hasNext()) {
+            HTMLTag tag = tags.next();
+            if (tag == null) {
+                break;
+            }
+            write(tag);
+        }
+    }
+
+    /**
+     * Writes the end record and flushes the stream. No more tags may be
+     * written after this. Does nothing if the stream is already finished.
+     */
+    public void finish() throws IOException {
+        if (!this.finished) {
+            ensure(1);
+            writeVarint(END);
+            this.finished = true;
+        }
+        flush();
+    }
+
+    /**
+     * Writes out the tags written so far and flushes the stream
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        this.out.flush();
+    }
+
+    /**
+     * Finishes the stream, then closes it
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            this.out.close();
+        }
+    }
+
+    private void writeName(String name) throws IOException {
+        Integer index = this.names.get(name);
+        ensure(5);
+        if (index != null) {
+            writeVarint(index + FIRST_NAME);
+            return;
+        }
+        if (this.names.size() < MAX_NAMES) {
+            this.names.put(name, this.names.size());
+            writeVarint(DEFINE);
+        } else {
+            writeVarint(LITERAL);
+        }
+        writeText(name);
+    }
+
+    /**
+     * Writes the header of the given text, then the text. Unpaired
+     * surrogates are written as '?'. If the text is too long for its
+     * header, throws an IllegalArgumentException.
+     */
+    private void writeText(String text) throws IOException {
+        boolean latin1 = true;
+        for (int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) < 0x100;
+        }
+        byte[] bytes = text.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        if (bytes.length > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Text is too long: " + bytes.length + " bytes");
+        }
+        ensure(5);
+        writeVarint(bytes.length << 1 | (latin1 ? 1 : 0));
+        if (bytes.length > this.buf.length - this.count) {
+            drain();
+            if (bytes.length >= this.buf.length) {
+                this.out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buf, this.count, bytes.length);
+        this.count += bytes.length;
+    }
+
+    /**
+     * Writes the given number, which must be at least 0, into the buffer,
+     * which must have room for it
+     */
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            this.buf[this.count++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        this.buf[this.count++] = (byte) value;
+    }
+
+    /**
+     * Makes room for the given number of bytes in the buffer
+     */
+    private void ensure(int bytes) throws IOException {
+        if (this.count + bytes > this.buf.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buf, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
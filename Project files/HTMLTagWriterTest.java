@@ -0,0 +1,157 @@
+package edu.caltech.cs2.project03;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Checks that tags written by HTMLTagWriter are read back equal by
+ * HTMLTagReader, and that damaged data is rejected.
+ */
+public class HTMLTagWriterTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		for (String page : HTMLParserTest.pages()) {
+			failures += checkBinary(page);
+		}
+		// Last, since it fills the element table
+		failures += checkBinary();
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that the tags of the page, up to any failure, are read back
+	 * equal after HTMLTagWriter writes them.
+	 */
+	private static int checkBinary(String page) {
+		Queue<HTMLTag> tags = new Queue<>();
+		try {
+			HTMLParser parser = new HTMLParser(page);
+			while (parser.hasNext()) {
+				tags.enqueue(parser.next());
+			}
+		} catch (HTMLParseException | IllegalArgumentException e) {
+			// The tags before the failure are still checked
+		}
+		return checkBinary(page, tags);
+	}
+
+	/**
+	 * Checks that tags the parser never makes, names past the name table
+	 * and damaged streams are handled, and that mapped files read back.
+	 */
+	private static int checkBinary() {
+		Queue<HTMLTag> tags = new Queue<>();
+		tags.enqueue(new HTMLTag(HTMLTagType.OPENING, "no element"));
+		tags.enqueue(new HTMLTag(HTMLTagType.CONTENT, ""));
+		tags.enqueue(new HTMLTag("a x=a\"b'c y=\"\" Z='caf\u00e9 \ud83d\ude00' w", HTMLTagType.OPENING));
+		tags.enqueue(new HTMLTag("A", HTMLTagType.CLOSING));
+		tags.enqueue(new HTMLTag("BR clear=all", HTMLTagType.OPENING));
+		tags.enqueue(new HTMLTag(HTMLTagType.COMMENT, " \u4e2d\u6587 "));
+		tags.enqueue(new HTMLTag("p a=x b = \" y \" c=\" z\"\n\td", HTMLTagType.OPENING));
+		StringBuilder many = new StringBuilder("span");
+		for (int i = 0; i < 1000; i++) {
+			many.append(" n").append(i).append("=").append(i);
+		}
+		tags.enqueue(new HTMLTag(many.toString(), HTMLTagType.OPENING));
+		// Names past the table are written in full every time. Reading them
+		// back fills the element table, so these are the last names used.
+		for (int i = 0; i < HTMLTagWriter.MAX_NAMES + 10; i++) {
+			tags.enqueue(new HTMLTag("n" + i % (HTMLTagWriter.MAX_NAMES + 5), HTMLTagType.OPENING));
+		}
+		int failures = checkBinary("unusual tags", tags);
+
+		byte[] data = writeBinary(tags);
+		try {
+			File file = File.createTempFile("tags", ".bin");
+			try {
+				Files.write(file.toPath(), data);
+				try (HTMLTagReader reader = HTMLTagReader.open(file)) {
+					failures += checkBinary("mapped", "unusual tags", tags, reader);
+				}
+			} finally {
+				file.delete();
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write test files: " + e);
+			failures++;
+		}
+
+		byte[][] damaged = {
+			Arrays.copyOf(data, data.length - 1),
+			Arrays.copyOf(data, 4),
+			"HTMX\u0001\u0007".getBytes(StandardCharsets.US_ASCII),
+			"HTMB\u0001\u0007".getBytes(StandardCharsets.US_ASCII),
+			"HTMB\u0003\u0007".getBytes(StandardCharsets.US_ASCII),
+			"HTMB\u0002\u0009\u0005".getBytes(StandardCharsets.US_ASCII),
+		};
+		for (byte[] bytes : damaged) {
+			try {
+				new HTMLTagReader(ByteBuffer.wrap(bytes)).readAll();
+				System.out.println("HTMLTagReader read damaged data: " + Arrays.toString(Arrays.copyOf(bytes, 8)));
+				failures++;
+			} catch (UncheckedIOException e) {
+				// Expected
+			}
+		}
+		return failures;
+	}
+
+	private static int checkBinary(String page, Queue<HTMLTag> tags) {
+		byte[] data = writeBinary(tags);
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+		InputStream trickle = new FilterInputStream(new ByteArrayInputStream(data)) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		return checkBinary("heap", page, tags, new HTMLTagReader(ByteBuffer.wrap(data)))
+				+ checkBinary("direct", page, tags, new HTMLTagReader(direct))
+				+ checkBinary("stream", page, tags, new HTMLTagReader(trickle));
+	}
+
+	private static byte[] writeBinary(Queue<HTMLTag> tags) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (HTMLTagWriter writer = new HTMLTagWriter(bytes)) {
+			writer.writeAll(tags.iterator());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static int checkBinary(String name, String page, Queue<HTMLTag> expected, HTMLTagReader actual) {
+		Iterator<HTMLTag> tags = expected.iterator();
+		int index = 0;
+		while (tags.hasNext()) {
+			HTMLTag tag = tags.next();
+			HTMLTag read = actual.hasNext() ? actual.next() : null;
+			if (read == null || !tag.equals(read) || !tag.toString().equals(read.toString())) {
+				System.out.println("HTMLTagReader/" + name + " differs at tag " + index + " on: " + page);
+				System.out.println("  expected " + HTMLParserTest.describe(tag));
+				System.out.println("  actual   " + (read == null ? "end" : HTMLParserTest.describe(read)));
+				return 1;
+			}
+			index++;
+		}
+		if (actual.hasNext()) {
+			System.out.println("HTMLTagReader/" + name + " has extra tags on: " + page);
+			return 1;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,637 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Tokenizes a string of tags into HTMLTags with a hand-written state
+ * machine instead of regular expressions. Every token is found with a
+ * single forward scan of the source, and the tags produced are exactly
+ * the ones HTMLParser produces for the same source.
+ *
+ * The source may be a String or a Reader. A Reader is read through a
+ * fixed-size window that only grows when a single token does not fit in
+ * it, and each HTMLTag is returned as soon as its text has been read.
+ *
+ * Under ParseLimits, a token is never looked for more than twice the
+ * maximum token length past its start, so a page with no way to end a
+ * token fails after bounded work, and a Reader's window stops growing.
+ */
+public class HTMLTokenizer implements Iterator<HTMLTag> {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int NAME_CACHE_SIZE = 256;
+
+    private final Reader source;
+    // The source when it was given as a String, so that delimiters can be
+    // found with String.indexOf
+    private final String page;
+    private char[] buf;
+    private int limit;
+    private boolean eof;
+    private int pos;
+    private boolean inScript;
+    // Characters discarded from the front of the window so far
+    private long consumed;
+    private ParseLimits.Guard guard;
+
+    // Bounds of the token found by the last call to scan()
+    private int dataStart;
+    private int dataEnd;
+    private int tokenEnd;
+    private boolean opensScript;
+
+    // Element names already looked up, by a hash of their text
+    private char[][] nameKeys;
+    private int[] nameIds;
+
+    /**
+     * Creates an HTMLTokenizer based off the given source String
+     */
+    public HTMLTokenizer(String page) {
+        this.source = null;
+        this.page = page;
+        this.buf = page.toCharArray();
+        this.limit = this.buf.length;
+        this.eof = true;
+        this.pos = 0;
+        this.inScript = false;
+    }
+
+    /**
+     * Creates an HTMLTokenizer over the given characters, which are not
+     * copied, starting at the given index as though the tag before it had
+     * or had not opened a script.
+     */
+    HTMLTokenizer(char[] page, int start, boolean inScript) {
+        this.source = null;
+        this.page = null;
+        this.buf = page;
+        this.limit = page.length;
+        this.eof = true;
+        this.pos = start;
+        this.inScript = inScript;
+    }
+
+    /**
+     * Creates an HTMLTokenizer that reads its source from the given Reader
+     * through a window of the given size.
+     */
+    public HTMLTokenizer(Reader source, int bufferSize) {
+        if (source == null || bufferSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.source = source;
+        this.page = null;
+        this.buf = new char[bufferSize];
+        this.limit = 0;
+        this.eof = false;
+        this.pos = 0;
+        this.inScript = false;
+    }
+
+    /**
+     * Creates an HTMLTokenizer that reads its source from the given Reader
+     */
+    public HTMLTokenizer(Reader source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an HTMLTokenizer that reads its source from the given UTF-8
+     * encoded InputStream
+     */
+    public HTMLTokenizer(InputStream source) {
+        this(new InputStreamReader(source, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Enforces the given limits on the rest of the source. If the given
+     * limits are null, throws an IllegalArgumentException.
+     */
+    public void setLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException();
+        }
+        this.guard = limits.guard();
+    }
+
+    /**
+     * Reads more of the source into the window, first discarding everything
+     * before the cursor. Reads until the unconsumed text has at least
+     * doubled, so that a token spanning many reads is only rescanned a
+     * logarithmic number of times.
+     */
+    private void fill() {
+        int pending = this.limit - this.pos;
+        System.arraycopy(this.buf, this.pos, this.buf, 0, pending);
+        this.consumed += this.pos;
+        this.limit = pending;
+        this.pos = 0;
+
+        int wanted = Math.max(2 * pending, pending + 1);
+        if (wanted > this.buf.length) {
+            char[] larger = new char[Math.max(wanted, 2 * this.buf.length)];
+            System.arraycopy(this.buf, 0, larger, 0, pending);
+            this.buf = larger;
+        }
+
+        try {
+            while (this.limit < wanted) {
+                int read = this.source.read(this.buf, this.limit, this.buf.length - this.limit);
+                if (read < 0) {
+                    this.eof = true;
+                    return;
+                }
+                this.limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Skips whitespace, as defined by String.trim(), reading more of the
+     * source as needed. Returns false if the source is exhausted.
+     */
+    private boolean skipWhitespace() {
+        while (true) {
+            while (this.pos < this.limit && this.buf[this.pos] <= ' ') {
+                this.pos++;
+            }
+            if (this.pos < this.limit || this.eof) {
+                return this.pos < this.limit;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Returns the number of \s characters starting at the given index.
+     */
+    private int spaceRun(int from, int to) {
+        int i = from;
+        while (i < to && AttributeScanner.isSpace(this.buf[i])) {
+            i++;
+        }
+        return i - from;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given character at or
+     * after the given index in the window, or -1 if there is none.
+     */
+    private int indexOf(char c, int from) {
+        if (this.page != null) {
+            return DelimiterScanner.indexOf(this.page, c, from, this.limit);
+        }
+        return DelimiterScanner.indexOf(this.buf, c, from, this.limit);
+    }
+
+    /**
+     * Returns true if the window holds the given text at the given index.
+     */
+    private boolean startsWith(String text, int at) {
+        if (at + text.length() > this.limit) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (this.buf[at + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next token at the cursor without consuming it. Returns its
+     * type and records its bounds, or returns null if no token starts at
+     * the cursor.
+     *
+     * Every scan that runs into the end of the window fails, so a failed
+     * scan is retried with more of the source until the source runs out.
+     * Under limits, the window is cut short instead once it reaches as far
+     * as the scan may look, and a scan that fails there is too long.
+     */
+    private HTMLTagType scan() {
+        while (true) {
+            skipWhitespace();
+            if (!this.eof && this.limit - this.pos < 4) {
+                fill();
+                continue;
+            }
+            int end = this.limit;
+            boolean bounded = this.guard != null && end - this.pos > this.guard.window();
+            if (bounded) {
+                this.limit = this.pos + this.guard.window();
+            }
+            HTMLTagType type;
+            try {
+                type = scanWindow();
+            } finally {
+                this.limit = end;
+            }
+            if (type != null) {
+                if (this.guard != null) {
+                    check(type);
+                }
+                return type;
+            }
+            if (bounded) {
+                throw this.guard.tooLong(offset());
+            }
+            if (this.eof) {
+                return null;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Passes the token found by scan() to the guard, as the type it will
+     * have as an HTMLTag.
+     */
+    private void check(HTMLTagType type) {
+        if (type == HTMLTagType.OPENING && HTMLElementTable.isSelfClosing(elementId())) {
+            type = HTMLTagType.SELF_CLOSING;
+        }
+        this.guard.token(type, this.tokenEnd - this.pos, offset());
+    }
+
+    /**
+     * Returns the index of the cursor in the whole source.
+     */
+    private long offset() {
+        return this.consumed + this.pos;
+    }
+
+    /**
+     * Returns the exception for a page where no token starts at the cursor.
+     */
+    private HTMLParseException malformed() {
+        return new HTMLParseException(HTMLParseException.Reason.MALFORMED, offset(), "No tag could be read");
+    }
+
+    /**
+     * Returns the exception for a tag at the cursor with nothing but
+     * whitespace inside it, which HTMLTag cannot be built from.
+     */
+    private HTMLParseException unnamed() {
+        return new HTMLParseException(HTMLParseException.Reason.MALFORMED, offset(), "Tag has no element name");
+    }
+
+    private HTMLTagType scanWindow() {
+        if (startsWith("<!--", this.pos)) {
+            return scanComment();
+        } else if (this.pos < this.limit && this.buf[this.pos] == '<' && !this.inScript) {
+            return scanTag();
+        } else if (this.inScript) {
+            return scanScriptContent();
+        } else {
+            return scanContent();
+        }
+    }
+
+    /**
+     * Moves the cursor past the token found by the last call to scan().
+     */
+    private void accept() {
+        this.pos = this.tokenEnd;
+        this.inScript = this.opensScript;
+    }
+
+    /**
+     * Scans an opening, closing or self-closing tag starting with the '<'
+     * at the cursor.
+     */
+    private HTMLTagType scanTag() {
+        int start = this.pos + 1;
+        int close = indexOf('>', start);
+        if (close < 0) {
+            return null;
+        }
+
+        // The element data ends at the last character that is neither '/'
+        // nor ' ', provided at most one '/' follows it
+        boolean selfClosing = false;
+        int last = close - 1;
+        while (last >= start) {
+            char c = this.buf[last];
+            if (c != '/' && c != ' ') {
+                break;
+            }
+            if (c == '/') {
+                if (selfClosing) {
+                    return null;
+                }
+                selfClosing = true;
+            }
+            last--;
+        }
+        if (last < start) {
+            return null;
+        }
+
+        // The element data starts after leading whitespace and at most one
+        // '/', but never after the last character found above
+        boolean closing = false;
+        int first = start + spaceRun(start, close);
+        if (first < close && this.buf[first] == '/' && first + 1 <= last) {
+            closing = true;
+            first = first + 1 + Math.min(spaceRun(first + 1, close), last - first - 1);
+        } else if (first > last) {
+            first = last;
+        }
+
+        this.dataStart = first;
+        this.dataEnd = last + 1;
+        this.tokenEnd = close + 1;
+        if (elementStart() == this.dataEnd) {
+            throw unnamed();
+        }
+
+        if (closing) {
+            this.opensScript = false;
+            return HTMLTagType.CLOSING;
+        } else if (selfClosing) {
+            this.opensScript = false;
+            return HTMLTagType.SELF_CLOSING;
+        } else {
+            this.opensScript = elementIs(first, last + 1, "script");
+            return HTMLTagType.OPENING;
+        }
+    }
+
+    /**
+     * Returns true if the element name HTMLTag would read from the given
+     * range of tag data is exactly the given name.
+     */
+    private boolean elementIs(int from, int to, String name) {
+        while (from < to && this.buf[from] <= ' ') {
+            from++;
+        }
+        while (to > from && this.buf[to - 1] <= ' ') {
+            to--;
+        }
+        int matched = 0;
+        for (int i = from; i < to; i++) {
+            char c = this.buf[i];
+            if (c == '\r') {
+                continue;
+            }
+            if (AttributeScanner.isSpace(c)) {
+                break;
+            }
+            if (matched == name.length() || c != name.charAt(matched)) {
+                return false;
+            }
+            matched++;
+        }
+        return matched == name.length();
+    }
+
+    /**
+     * Scans a comment starting with the "<!--" at the cursor.
+     */
+    private HTMLTagType scanComment() {
+        int start = this.pos + 4;
+        int close = indexOf('>', start);
+        if (close < 0 || close - 3 < start) {
+            return null;
+        }
+        if (this.buf[close - 1] != '-' || this.buf[close - 2] != '-' || this.buf[close - 3] == '/') {
+            return null;
+        }
+
+        this.dataStart = start;
+        this.dataEnd = close - 2;
+        this.tokenEnd = close + 1;
+        this.opensScript = false;
+        return HTMLTagType.COMMENT;
+    }
+
+    /**
+     * Scans content up to, but not including, the next closing tag.
+     */
+    private HTMLTagType scanContent() {
+        int close = -1;
+        int i = indexOf('<', this.pos);
+        while (i >= 0) {
+            int slash = i + 1 + spaceRun(i + 1, this.limit);
+            if (slash < this.limit && this.buf[slash] == '/') {
+                // A closing tag needs at least one character before its '>'
+                if (close < slash + 1) {
+                    close = indexOf('>', slash + 1);
+                    if (close < 0) {
+                        return null;
+                    }
+                }
+                if (close > slash + 1) {
+                    return content(i);
+                }
+            }
+            i = indexOf('<', i + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Scans the body of a script up to, but not including, the next
+     * closing script tag.
+     */
+    private HTMLTagType scanScriptContent() {
+        int i = indexOf('<', this.pos);
+        while (i >= 0) {
+            int p = i + 1 + spaceRun(i + 1, this.limit);
+            if (p < this.limit && this.buf[p] == '/') {
+                p = p + 1 + spaceRun(p + 1, this.limit);
+                if (startsWith("script", p)) {
+                    p = p + 6 + spaceRun(p + 6, this.limit);
+                    if (p < this.limit && this.buf[p] == '>') {
+                        return content(i);
+                    }
+                }
+            }
+            i = indexOf('<', i + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Records a content token from the cursor up to the given index.
+     */
+    private HTMLTagType content(int to) {
+        this.dataStart = this.pos;
+        this.dataEnd = to;
+        this.tokenEnd = to;
+        this.opensScript = false;
+        return HTMLTagType.CONTENT;
+    }
+
+    /**
+     * Moves past the next token without building an HTMLTag for it and
+     * returns its type. If no token starts at the cursor, throws an
+     * HTMLParseException.
+     */
+    HTMLTagType skip() {
+        HTMLTagType type = scan();
+        if (type == null) {
+            throw malformed();
+        }
+        accept();
+        return type;
+    }
+
+    /**
+     * Moves the cursor to the given index of a tokenizer over a String or
+     * char[], as though the tag before it had or had not opened a script.
+     */
+    void seek(int position, boolean inScript) {
+        this.pos = position;
+        this.inScript = inScript;
+    }
+
+    /**
+     * Returns the index of the next token, after skipping whitespace. Two
+     * tokenizers over the same text at the same position and script state
+     * produce the same tokens from there on.
+     */
+    int position() {
+        skipWhitespace();
+        return this.pos;
+    }
+
+    /**
+     * Returns true if the last tag passed opened a script, so that the next
+     * token is read as script text.
+     */
+    boolean inScript() {
+        return this.inScript;
+    }
+
+    /**
+     * Returns the start of the text of the token last passed by skip(). For
+     * a tokenizer over a String this is an index into that String.
+     */
+    int dataStart() {
+        return this.dataStart;
+    }
+
+    /**
+     * Returns the end of the text of the token last passed by skip().
+     */
+    int dataEnd() {
+        return this.dataEnd;
+    }
+
+    /**
+     * Returns the start of the element name in the text of the token last
+     * passed by skip(), which is where the text starts after trimming.
+     */
+    int elementStart() {
+        int from = this.dataStart;
+        while (from < this.dataEnd && this.buf[from] <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the end of the element name starting at the given index: the
+     * first \s character that is not '\r', or the end of the trimmed text.
+     * HTMLTag drops any '\r' inside the name.
+     */
+    int elementEnd(int from) {
+        int to = this.dataEnd;
+        while (to > from && this.buf[to - 1] <= ' ') {
+            to--;
+        }
+        int i = from;
+        while (i < to && (this.buf[i] == '\r' || !AttributeScanner.isSpace(this.buf[i]))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the window the bounds of the last token index into. It is
+     * the same array until the next token is scanned.
+     */
+    char[] buffer() {
+        return this.buf;
+    }
+
+    /**
+     * Returns the HTMLElementTable ID of the element named by the tag last
+     * passed by skip(), reading the name the way HTMLTag does. Names are
+     * kept in a small cache by their text, so a name seen before is found
+     * without allocating. Only a tag with a name is ever passed.
+     */
+    int elementId() {
+        int from = elementStart();
+        int to = elementEnd(from);
+        if (this.nameKeys == null) {
+            this.nameKeys = new char[NAME_CACHE_SIZE][];
+            this.nameIds = new int[NAME_CACHE_SIZE];
+        }
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + this.buf[i];
+        }
+        // Each name may be in either slot of a pair, and a new name pushes
+        // the first one into the second
+        int slot = (hash * 0x9E3779B9) >>> 25 << 1;
+        if (cached(slot, from, to)) {
+            return this.nameIds[slot];
+        }
+        if (cached(slot + 1, from, to)) {
+            return this.nameIds[slot + 1];
+        }
+        this.nameKeys[slot + 1] = this.nameKeys[slot];
+        this.nameIds[slot + 1] = this.nameIds[slot];
+        String name = new String(this.buf, from, to - from).replace("\r", "");
+        this.nameKeys[slot] = Arrays.copyOfRange(this.buf, from, to);
+        this.nameIds[slot] = HTMLElementTable.id(name);
+        return this.nameIds[slot];
+    }
+
+    private boolean cached(int slot, int from, int to) {
+        char[] cached = this.nameKeys[slot];
+        return cached != null && Arrays.equals(cached, 0, cached.length, this.buf, from, to);
+    }
+
+    /**
+     * Returns the next HTMLTag in the source. If no tag can be read, or the
+     * limits are broken, throws an HTMLParseException.
+     */
+    public HTMLTag next() {
+        HTMLTagType type = scan();
+        if (type == null) {
+            throw malformed();
+        }
+        HTMLTag tag = new HTMLTag(new String(this.buf, this.dataStart, this.dataEnd - this.dataStart), type);
+        accept();
+        return tag;
+    }
+
+    /**
+     * Returns true if there is another HTMLTag in the source
+     * returns false otherwise.
+     */
+    public boolean hasNext() {
+        return skipWhitespace();
+    }
+
+    /**
+     * Throws UnsupportedOperationException
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
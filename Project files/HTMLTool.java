@@ -0,0 +1,130 @@
+package edu.caltech.cs2.project03;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs the parser from the command line, for use in pipelines:
+ *
+ *   HTMLTool [--unlimited] tokens|fix|pretty [FILE...]
+ *
+ * Each FILE, or standard input if there are none or for "-", is streamed
+ * through HTMLTokenizer and the HTMLCommand and written to standard
+ * output, so memory use does not grow with the size of the pages. Pages
+ * are parsed under ParseLimits.DEFAULT unless --unlimited is given.
+ *
+ * Each page is read in the charset its byte order mark or a meta tag in
+ * its first HTMLByteTokenizer.PRESCAN_LENGTH bytes gives, or else UTF-8,
+ * so nothing is written for standard input until that much of it has
+ * arrived or it ends. Output is always UTF-8.
+ *
+ * A page that fails is reported on standard error and the rest are still
+ * processed; its output up to the failure has already been written. The
+ * exit status is 0 if every page succeeded, 1 if any failed and 2 for bad
+ * arguments.
+ */
+public class HTMLTool {
+    public static final int OUTPUT_BUFFER = 64 * 1024;
+
+    public static void main(String[] args) {
+        Writer out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+        System.exit(run(args, System.in, out, System.err));
+    }
+
+    /**
+     * Runs the tool with the given arguments and streams, and returns its
+     * exit status. Flushes but does not close the output, and does not
+     * close the input either.
+     */
+    public static int run(String[] args, InputStream in, Writer out, PrintStream err) {
+        ParseLimits limits = ParseLimits.DEFAULT;
+        int first = 0;
+        if (first < args.length && args[first].equals("--unlimited")) {
+            limits = ParseLimits.UNLIMITED;
+            first++;
+        }
+        HTMLCommand command = null;
+        if (first < args.length) {
+            try {
+                command = HTMLCommand.valueOf(args[first].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Reported below
+            }
+        }
+        if (command == null) {
+            err.println("usage: HTMLTool [--unlimited] tokens|fix|pretty [FILE...]");
+            return 2;
+        }
+
+        String[] files = Arrays.copyOfRange(args, first + 1, args.length);
+        if (files.length == 0) {
+            files = new String[] {"-"};
+        }
+
+        Writer buffered = new BufferedWriter(out, OUTPUT_BUFFER);
+        int status = 0;
+        try {
+            for (String file : files) {
+                Reader reader;
+                try {
+                    reader = open(file, in);
+                } catch (IOException e) {
+                    err.println("HTMLTool: " + file + ": cannot be read (" + e + ")");
+                    status = 1;
+                    continue;
+                }
+                // The tokenizer wraps read errors, so an IOException here
+                // can only come from the output
+                try {
+                    HTMLTokenizer tags = new HTMLTokenizer(reader);
+                    tags.setLimits(limits);
+                    command.write(tags, buffered);
+                } catch (HTMLParseException | UncheckedIOException e) {
+                    err.println("HTMLTool: " + (file.equals("-") ? "standard input" : file) + ": " + e.getMessage());
+                    status = 1;
+                } finally {
+                    // The given input belongs to the caller. A file that
+                    // fails to close is reported on its own, since the
+                    // IOException below means the output is gone.
+                    if (!file.equals("-")) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            err.println("HTMLTool: " + file + ": cannot be closed (" + e + ")");
+                            status = 1;
+                        }
+                    }
+                }
+            }
+            buffered.flush();
+        } catch (IOException e) {
+            // Standard output is gone, for example a closed pipe
+            err.println("HTMLTool: " + e.getMessage());
+            return 1;
+        }
+        return status;
+    }
+
+    /**
+     * Opens the given file, or the given input for "-", in the charset its
+     * byte order mark or meta tag gives, or else UTF-8
+     */
+    private static Reader open(String file, InputStream in) throws IOException {
+        if (file.equals("-")) {
+            return HTMLByteTokenizer.reader(in);
+        }
+        return new MappedFileReader(new File(file));
+    }
+}
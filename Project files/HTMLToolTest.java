@@ -0,0 +1,181 @@
+package edu.caltech.cs2.project03;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks that pages written to files read back the same through
+ * HTMLPage, MappedFileReader and HTMLTool, and the command line tool's
+ * output and exit status.
+ */
+public class HTMLToolTest {
+	public static void main(String[] args) {
+		int failures = 0;
+		try {
+			failures += checkFiles();
+		} catch (IOException e) {
+			System.out.println("Could not write test files: " + e);
+			failures++;
+		}
+		try {
+			failures += checkTool();
+		} catch (IOException e) {
+			System.out.println("Could not write test files: " + e);
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Writes pages to disk and checks that reading them back through small
+	 * mapped windows, which split multi-byte characters, returns the same
+	 * text.
+	 */
+	private static int checkFiles() throws IOException {
+		int failures = 0;
+		List<String> pages = HTMLParserTest.corpus();
+		pages.add("<p>caf\u00e9 \u4e2d\u6587 \ud83d\ude00</p>");
+		for (String page : pages) {
+			failures += checkFile(page, page.getBytes(StandardCharsets.UTF_8));
+		}
+
+		// Other charsets are found the same way as for streams
+		String latin = "<meta charset=\"iso-8859-1\"><p>caf\u00e9 \u00fc</p>";
+		failures += checkFile(latin, latin.getBytes(StandardCharsets.ISO_8859_1));
+		String wide = "<p>\u4e2d\u6587</p>";
+		failures += checkFile(wide, wide.getBytes(StandardCharsets.UTF_16));
+		failures += checkFile(wide, ("\ufeff" + wide).getBytes(StandardCharsets.UTF_8));
+		return failures;
+	}
+
+	/**
+	 * Checks that the given bytes, written to a file, read as the given
+	 * page through HTMLPage, MappedFileReader with small windows and
+	 * HTMLTool, from the file and from standard input.
+	 */
+	private static int checkFile(String page, byte[] bytes) throws IOException {
+		int failures = 0;
+		File file = File.createTempFile("page", ".html");
+		try {
+			Files.write(file.toPath(), bytes);
+			if (!page.equals(new HTMLPage(file).unparsedPage)) {
+				System.out.println("HTMLPage(File) differs on: " + page);
+				failures++;
+			}
+			for (int window = 1; window <= 5; window++) {
+				StringWriter read = new StringWriter();
+				try (MappedFileReader in = new MappedFileReader(file, window)) {
+					in.transferTo(read);
+				}
+				if (!page.equals(read.toString())) {
+					System.out.println("MappedFileReader/" + window + " differs on: " + page);
+					failures++;
+				}
+			}
+
+			// The tool writes the tags up to a failure
+			StringWriter tokens = new StringWriter();
+			try {
+				HTMLCommand.TOKENS.write(new HTMLTokenizer(page), tokens);
+			} catch (HTMLParseException | IllegalArgumentException e) {
+				// Compared up to here
+			}
+			for (String input : new String[] {file.toString(), "-"}) {
+				StringWriter out = new StringWriter();
+				PrintStream err = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+				HTMLTool.run(new String[] {"--unlimited", "tokens", input}, new ByteArrayInputStream(bytes), out, err);
+				if (!tokens.toString().equals(out.toString())) {
+					System.out.println("HTMLTool " + input + " differs on: " + page);
+					failures++;
+				}
+			}
+		} finally {
+			file.delete();
+		}
+		return failures;
+	}
+
+	/**
+	 * Checks that the command line tool writes every page in turn, from
+	 * files and standard input, and exits with the right status.
+	 */
+	private static int checkTool() throws IOException {
+		String[] pages = {"<div><p>a<b>b</div>c</p>", "<ul><li>one<li>two</ul>"};
+		List<String> printed = new ArrayList<>();
+		List<String> args = new ArrayList<>(List.of("pretty"));
+		List<File> files = new ArrayList<>();
+		int failures = 0;
+		try {
+			for (String page : pages) {
+				File file = File.createTempFile("page", ".html");
+				files.add(file);
+				Files.writeString(file.toPath(), page);
+				args.add(file.toString());
+				HTMLManager manager = new HTMLManager(TokenBuffer.parse(page));
+				manager.fixHTML();
+				printed.add(manager.toString());
+			}
+			args.add("-");
+			failures += checkTool(args, pages[0], 0, printed.get(0) + printed.get(1) + printed.get(0));
+
+			args.set(args.size() - 1, files.get(0) + ".missing");
+			failures += checkTool(args, "", 1, null);
+			failures += checkTool(List.of("tokens"), "<p>x</p>trailing", 1, "<p>\nx\n</p>\n");
+			failures += checkTool(List.of("tokens"), "<p>a</\r>", 1, "<p>\na\n");
+			failures += checkTool(List.of("--unlimited", "fix"), "<b><i>x</b>", 0, "<b><i>x</i></b>");
+			failures += checkTool(List.of("unknown"), "", 2, "");
+
+			// In Turkish "fix" upper-cases to a dotted capital I
+			Locale locale = Locale.getDefault();
+			Locale.setDefault(Locale.forLanguageTag("tr"));
+			try {
+				failures += checkTool(List.of("fix"), "<b><i>x</b>", 0, "<b><i>x</i></b>");
+			} finally {
+				Locale.setDefault(locale);
+			}
+		} finally {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		return failures;
+	}
+
+	private static int checkTool(List<String> args, String in, int status, String expected) {
+		StringWriter out = new StringWriter();
+		PrintStream err = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+		boolean[] closed = {false};
+		InputStream input = new FilterInputStream(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8))) {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+				super.close();
+			}
+		};
+		int actual = HTMLTool.run(args.toArray(new String[0]), input, out, err);
+		if (actual != status || (expected != null && !expected.equals(out.toString()))) {
+			System.out.println("HTMLTool " + args + " exited with " + actual + " and wrote:\n" + out);
+			return 1;
+		}
+		if (closed[0]) {
+			System.out.println("HTMLTool " + args + " closed its input");
+			return 1;
+		}
+		return 0;
+	}
+}
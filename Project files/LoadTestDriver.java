@@ -0,0 +1,272 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Pushes generated pages through HTMLParser and HTMLManager.fixHTML and
+ * reports throughput and latency percentiles for each CorpusProfile. The
+ * results can be saved as a baseline, and later runs compared against it:
+ * a run fails, with exit status 1, if throughput drops or latency rises by
+ * more than the tolerance.
+ *
+ * Arguments, all optional:
+ *   --profile NAME        one CorpusProfile, or "all" (default)
+ *   --size N[K|M|G]       chars per page (default 1M)
+ *   --docs N              pages per profile (default 20)
+ *   --seed N              seed of the first page (default 1)
+ *   --streaming           read each page from the generator through
+ *                         HTMLTokenizer and HTMLFixer without holding it,
+ *                         for pages larger than the heap; the time then
+ *                         includes generating the page
+ *   --save-baseline FILE  write the results to FILE
+ *   --baseline FILE       compare the results against FILE
+ *   --tolerance X         allowed fraction of regression (default 0.25)
+ */
+public class LoadTestDriver {
+    private final List<CorpusProfile> profiles = new ArrayList<>();
+    private long size = 1024 * 1024;
+    private int docs = 20;
+    private long seed = 1;
+    private boolean streaming = false;
+    private Path saveBaseline;
+    private Path baseline;
+    private double tolerance = 0.25;
+
+    /**
+     * The measurements for one profile
+     */
+    record Result(CorpusProfile profile, double charsPerSecond, double p50, double p90, double p99, double max) {
+        public String toString() {
+            return String.format("%-10s %10.1f MB/s  p50 %9.2f ms  p90 %9.2f ms  p99 %9.2f ms  max %9.2f ms",
+                    profile, charsPerSecond / 1e6, p50, p90, p99, max);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadTestDriver driver = new LoadTestDriver(args);
+        List<Result> results = driver.run();
+        if (!driver.check(results)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a driver configured by the given command line arguments. If
+     * an argument is not understood, throws an IllegalArgumentException.
+     */
+    public LoadTestDriver(String[] args) {
+        String profile = "all";
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--streaming")) {
+                this.streaming = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--profile" -> profile = value;
+                case "--size" -> this.size = parseSize(value);
+                case "--docs" -> this.docs = Integer.parseInt(value);
+                case "--seed" -> this.seed = Long.parseLong(value);
+                case "--save-baseline" -> this.saveBaseline = Path.of(value);
+                case "--baseline" -> this.baseline = Path.of(value);
+                case "--tolerance" -> this.tolerance = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (profile.equalsIgnoreCase("all")) {
+            this.profiles.addAll(Arrays.asList(CorpusProfile.values()));
+        } else {
+            this.profiles.add(CorpusProfile.valueOf(profile.toUpperCase()));
+        }
+        if (this.docs < 1 || this.size < 0 || this.tolerance < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!this.streaming && this.size > Integer.MAX_VALUE - 1024) {
+            throw new IllegalArgumentException("Pages this large need --streaming");
+        }
+    }
+
+    /**
+     * Returns the number of chars in a size like "16K" or "1M"
+     */
+    static long parseSize(String value) {
+        long scale = 1;
+        char unit = Character.toUpperCase(value.charAt(value.length() - 1));
+        if (unit == 'K' || unit == 'M' || unit == 'G') {
+            scale = unit == 'K' ? 1024L : unit == 'M' ? 1024L * 1024 : 1024L * 1024 * 1024;
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value) * scale;
+    }
+
+    /**
+     * Runs every profile, prints the results and saves them if asked to
+     */
+    public List<Result> run() throws IOException {
+        System.out.printf("%d pages of %,d chars per profile%s%n", this.docs, this.size,
+                this.streaming ? ", streaming" : "");
+
+        // Warm up the JIT before timing anything
+        for (CorpusProfile profile : this.profiles) {
+            process(profile, -1 - this.seed, Math.min(this.size, 256 * 1024));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (CorpusProfile profile : this.profiles) {
+            long[] latencies = new long[this.docs];
+            long chars = 0;
+            long total = 0;
+            for (int i = 0; i < this.docs; i++) {
+                long[] measured = process(profile, this.seed + i, this.size);
+                chars += measured[0];
+                latencies[i] = measured[1];
+                total += measured[1];
+            }
+            Arrays.sort(latencies);
+            Result result = new Result(profile, chars / (total / 1e9),
+                    percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                    latencies[latencies.length - 1] / 1e6);
+            System.out.println(result);
+            results.add(result);
+        }
+
+        if (this.saveBaseline != null) {
+            Properties properties = new Properties();
+            for (Result result : results) {
+                properties.setProperty(result.profile() + ".throughput", Double.toString(result.charsPerSecond()));
+                properties.setProperty(result.profile() + ".p50", Double.toString(result.p50()));
+                properties.setProperty(result.profile() + ".p99", Double.toString(result.p99()));
+            }
+            try (Writer out = Files.newBufferedWriter(this.saveBaseline)) {
+                properties.store(out, String.format("LoadTestDriver baseline: %d pages of %d chars, seed %d",
+                        this.docs, this.size, this.seed));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the sorted latencies, in ms
+     */
+    static double percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Parses and fixes one page, up to where parsing fails if it does.
+     * Returns its length and the nanoseconds taken.
+     */
+    private long[] process(CorpusProfile profile, long seed, long size) {
+        if (this.streaming) {
+            CountingReader in = new CountingReader(new CorpusGenerator(profile, seed, size));
+            long start = System.nanoTime();
+            Iterator<HTMLTag> fixed = new HTMLFixer(new HTMLTokenizer(in));
+            try {
+                while (fixed.hasNext()) {
+                    fixed.next();
+                }
+            } catch (HTMLParseException e) {
+                // Malformed profiles generate pages that end where no tag
+                // can be read
+            }
+            return new long[] {in.count, System.nanoTime() - start};
+        }
+
+        String page = CorpusGenerator.generate(profile, seed, (int) size);
+        long start = System.nanoTime();
+        Queue<HTMLTag> tags = new Queue<>();
+        HTMLParser parser = new HTMLParser(page);
+        try {
+            while (parser.hasNext()) {
+                tags.enqueue(parser.next());
+            }
+        } catch (HTMLParseException e) {
+            // As above
+        }
+        HTMLManager manager = new HTMLManager(tags);
+        manager.fixHTML();
+        return new long[] {page.length(), System.nanoTime() - start};
+    }
+
+    /**
+     * Compares the results against the baseline, if there is one. Prints
+     * every regression and returns false if there were any.
+     */
+    public boolean check(List<Result> results) throws IOException {
+        if (this.baseline == null) {
+            return true;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(this.baseline)) {
+            properties.load(in);
+        }
+
+        boolean passed = true;
+        for (Result result : results) {
+            String name = result.profile().toString();
+            passed &= checkAtLeast(properties, name + ".throughput", result.charsPerSecond());
+            passed &= checkAtMost(properties, name + ".p50", result.p50());
+            passed &= checkAtMost(properties, name + ".p99", result.p99());
+        }
+        System.out.println(passed ? "No regressions against " + this.baseline : "Regressed against " + this.baseline);
+        return passed;
+    }
+
+    private boolean checkAtLeast(Properties baseline, String key, double actual) {
+        String expected = baseline.getProperty(key);
+        if (expected != null && actual < Double.parseDouble(expected) * (1 - this.tolerance)) {
+            System.out.printf("  %s fell to %.3g from %s%n", key, actual, expected);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkAtMost(Properties baseline, String key, double actual) {
+        String expected = baseline.getProperty(key);
+        if (expected != null && actual > Double.parseDouble(expected) * (1 + this.tolerance)) {
+            System.out.printf("  %s rose to %.3g from %s%n", key, actual, expected);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the chars read through it
+     */
+    private static class CountingReader extends Reader {
+        private final Reader in;
+        private long count;
+
+        CountingReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = this.in.read(cbuf, off, len);
+            if (n > 0) {
+                this.count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
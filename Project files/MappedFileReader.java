@@ -0,0 +1,164 @@
+package edu.caltech.cs2.project03;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file by memory-mapping it instead of copying it through a
+ * FileInputStream. The file is decoded in the charset its byte order mark
+ * or meta tag gives, or else UTF-8, as HTMLByteTokenizer.sniff decides,
+ * and the byte order mark is not returned. Bytes are moved from the
+ * mapping into a small staging buffer, where the decoder's fast path for
+ * arrays applies, and decoded into the caller's buffer. Files larger than
+ * one mapping can address are mapped one window at a time.
+ */
+public class MappedFileReader extends Reader {
+    public static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private static final int STAGING_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer staging;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean done;
+
+    /**
+     * Opens the given file for reading
+     */
+    public MappedFileReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the given file for reading, mapping at most the given number of
+     * bytes at a time.
+     */
+    public MappedFileReader(File file, long windowSize) throws IOException {
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = this.channel.size();
+        this.windowSize = windowSize;
+        map(0);
+
+        // A window may be shorter than the prescan, so sniff a copy of the
+        // file's first bytes
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(this.size, HTMLByteTokenizer.PRESCAN_LENGTH));
+        this.channel.read(head, 0);
+        head.flip();
+        this.charset = HTMLByteTokenizer.sniff(head);
+        // Same handling of malformed input as InputStreamReader
+        this.decoder = this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.staging = ByteBuffer.allocate(STAGING_SIZE).flip();
+        skip(HTMLByteTokenizer.bomLength(head));
+    }
+
+    /**
+     * Moves past the given number of bytes at the start of the file
+     */
+    private void skip(int bytes) throws IOException {
+        while (bytes > 0) {
+            if (!this.window.hasRemaining()) {
+                map(this.windowStart + this.window.limit());
+            }
+            int n = Math.min(bytes, this.window.remaining());
+            this.window.position(this.window.position() + n);
+            bytes -= n;
+        }
+    }
+
+    /**
+     * Returns the charset the file is decoded in.
+     */
+    public Charset charset() {
+        return this.charset;
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Maps the window of the file starting at the given byte offset.
+     */
+    private void map(long start) throws IOException {
+        this.windowStart = start;
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(this.windowSize, this.size - start));
+    }
+
+    private boolean isLastWindow() {
+        return this.windowStart + this.window.limit() == this.size;
+    }
+
+    /**
+     * Moves the next run of bytes from the mapping into the staging buffer,
+     * after any bytes of a sequence the decoder has not finished yet.
+     */
+    private void stage() throws IOException {
+        if (!this.window.hasRemaining() && !isLastWindow()) {
+            map(this.windowStart + this.window.limit());
+        }
+        this.staging.compact();
+        int n = Math.min(this.staging.remaining(), this.window.remaining());
+        this.window.get(this.staging.array(), this.staging.position(), n);
+        this.staging.position(this.staging.position() + n);
+        this.staging.flip();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.done) {
+            return -1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.hasRemaining()) {
+            boolean end = !this.window.hasRemaining() && isLastWindow();
+            CoderResult result = this.decoder.decode(this.staging, out, end);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (end) {
+                if (this.decoder.flush(out).isUnderflow()) {
+                    this.done = true;
+                }
+                break;
+            }
+            stage();
+        }
+
+        int read = out.position() - off;
+        return read == 0 && this.done ? -1 : read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        this.channel.close();
+    }
+}
@@ -0,0 +1,283 @@
+package edu.caltech.cs2.project03;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses one large page on several threads. The page is cut into chunks
+ * at '<' characters and every chunk is tokenized at once, each as though
+ * a tag started there and no script was open. The chunks are then joined
+ * in order, checking each guess against where the tokens before it
+ * actually end. A guess can be wrong, for example when a cut falls in a
+ * comment or a script; the tokens after it are then read again one at a
+ * time until they line up with the chunk's, and the rest of the chunk is
+ * used as is. The tags produced are always exactly the ones HTMLParser
+ * produces.
+ *
+ * Under ParseLimits, each chunk is read with the token length limit and
+ * the timeout, and the joined tokens are then checked in order for depth
+ * and count, so a limit fails at the same tag it would sequentially.
+ */
+public class ParallelParser implements Iterator<HTMLTag> {
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final TokenBuffer tokens;
+    // The exception that stopped parsing if any, thrown once the tokens
+    // before it have been returned
+    private RuntimeException error;
+    private int available;
+    private int index;
+
+    /**
+     * The tokens read from one chunk, along with the cursor and script
+     * state before each of them and after the last.
+     */
+    private static class Chunk {
+        final TokenBuffer tokens;
+        int[] positions = new int[16];
+        boolean[] scripts = new boolean[16];
+        int boundaries;
+        RuntimeException error;
+
+        Chunk(String page) {
+            this.tokens = new TokenBuffer(page);
+        }
+
+        void mark(HTMLTokenizer tokenizer) {
+            if (this.boundaries == this.positions.length) {
+                this.positions = Arrays.copyOf(this.positions, 2 * this.boundaries);
+                this.scripts = Arrays.copyOf(this.scripts, 2 * this.boundaries);
+            }
+            this.positions[this.boundaries] = tokenizer.position();
+            this.scripts[this.boundaries] = tokenizer.inScript();
+            this.boundaries++;
+        }
+
+        int last() {
+            return this.boundaries - 1;
+        }
+    }
+
+    /**
+     * Creates a ParallelParser over the given source String, using the
+     * common ForkJoinPool
+     */
+    public ParallelParser(String page) {
+        this(page, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a ParallelParser over the given source String that cuts it
+     * into chunks of about the given size and reads them on the given pool.
+     * The whole page is parsed before this returns.
+     */
+    public ParallelParser(String page, ForkJoinPool pool, int chunkSize) {
+        this(page, pool, chunkSize, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Creates a ParallelParser like the one above that fails, once the tags
+     * before the failure have been returned, with an HTMLParseException
+     * where the page breaks the given limits.
+     */
+    public ParallelParser(String page, ForkJoinPool pool, int chunkSize, ParseLimits limits) {
+        if (page == null || pool == null || chunkSize < 1 || limits == null) {
+            throw new IllegalArgumentException();
+        }
+        // Depth and count depend on every token before a chunk, so only
+        // the joined tokens can be checked against them
+        ParseLimits.Guard guard = limits.guard();
+        ParseLimits perChunk = new ParseLimits(limits.maxTokenLength(), Integer.MAX_VALUE,
+                Long.MAX_VALUE, limits.timeoutMillis());
+        char[] chars = page.toCharArray();
+        int[] starts = split(chars, chunkSize);
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(starts.length);
+        for (int k = 0; k < starts.length; k++) {
+            int start = starts[k];
+            int end = k + 1 < starts.length ? starts[k + 1] : chars.length;
+            tasks.add(pool.submit(() -> read(page, chars, start, end, perChunk)));
+        }
+
+        this.tokens = new TokenBuffer(page);
+        join(chars, starts, tasks, perChunk);
+        this.tokens.trimToSize();
+        this.available = this.tokens.size();
+        check(guard);
+    }
+
+    /**
+     * Passes the joined tokens in order to the given guard, if any, and
+     * stops before the first one that breaks the limits.
+     */
+    private void check(ParseLimits.Guard guard) {
+        if (guard == null) {
+            return;
+        }
+        for (int i = 0; i < this.available; i++) {
+            try {
+                guard.token(this.tokens.type(i), 0, this.tokens.start(i));
+            } catch (HTMLParseException e) {
+                this.error = e;
+                this.available = i;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the start of each chunk: the first '<' at or after each
+     * multiple of the chunk size.
+     */
+    private static int[] split(char[] chars, int chunkSize) {
+        int[] starts = new int[chars.length / chunkSize + 1];
+        int count = 1;
+        int next = chunkSize;
+        while (next < chars.length) {
+            int start = next;
+            while (start < chars.length && chars[start] != '<') {
+                start++;
+            }
+            if (start == chars.length) {
+                break;
+            }
+            starts[count++] = start;
+            next = Math.max(start + 1, next + chunkSize);
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Tokenizes the chunk from start, stopping before the first token that
+     * starts at or after end.
+     */
+    private static Chunk read(String page, char[] chars, int start, int end, ParseLimits limits) {
+        Chunk chunk = new Chunk(page);
+        HTMLTokenizer tokenizer = new HTMLTokenizer(chars, start, false);
+        tokenizer.setLimits(limits);
+        chunk.mark(tokenizer);
+        while (tokenizer.position() < end) {
+            try {
+                chunk.tokens.addNext(tokenizer);
+            } catch (RuntimeException e) {
+                chunk.error = e;
+                break;
+            }
+            chunk.mark(tokenizer);
+        }
+        return chunk;
+    }
+
+    /**
+     * Joins the chunks in order into this parser's tokens.
+     */
+    private void join(char[] chars, int[] starts, List<ForkJoinTask<Chunk>> tasks, ParseLimits limits) {
+        HTMLTokenizer tokenizer = new HTMLTokenizer(chars, 0, false);
+        tokenizer.setLimits(limits);
+        int pos = tokenizer.position();
+        boolean script = false;
+
+        for (int k = 0; k < tasks.size(); k++) {
+            Chunk chunk = tasks.get(k).join();
+            int end = k + 1 < starts.length ? starts[k + 1] : chars.length;
+            int j = 0;
+            while (pos < chars.length) {
+                while (j <= chunk.last() && chunk.positions[j] < pos) {
+                    j++;
+                }
+                if (j <= chunk.last() && chunk.positions[j] == pos && chunk.scripts[j] == script) {
+                    // The chunk's guess holds from here on
+                    this.tokens.addAll(chunk.tokens, j, chunk.tokens.size());
+                    pos = chunk.positions[chunk.last()];
+                    script = chunk.scripts[chunk.last()];
+                    if (chunk.error != null) {
+                        this.error = chunk.error;
+                        cancel(tasks, k + 1);
+                        return;
+                    }
+                    break;
+                }
+                if (j > chunk.last() || pos >= end) {
+                    break;
+                }
+                // Read one more token in order and try again
+                tokenizer.seek(pos, script);
+                if (!next(tokenizer)) {
+                    cancel(tasks, k + 1);
+                    return;
+                }
+                pos = tokenizer.position();
+                script = tokenizer.inScript();
+            }
+        }
+
+        tokenizer.seek(pos, script);
+        while (tokenizer.hasNext()) {
+            if (!next(tokenizer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends the next token in order. Returns false, recording why, if
+     * none can be read.
+     */
+    private boolean next(HTMLTokenizer tokenizer) {
+        try {
+            this.tokens.addNext(tokenizer);
+            return true;
+        } catch (RuntimeException e) {
+            this.error = e;
+            return false;
+        }
+    }
+
+    private static void cancel(List<ForkJoinTask<Chunk>> tasks, int from) {
+        for (int k = from; k < tasks.size(); k++) {
+            tasks.get(k).cancel(false);
+        }
+    }
+
+    /**
+     * Returns the tokens of the page. If parsing failed, holds the tokens
+     * read before that point, which may run past a broken limit.
+     */
+    public TokenBuffer tokens() {
+        return this.tokens;
+    }
+
+    /**
+     * Returns the next HTMLTag in the source String. Where HTMLParser
+     * would fail, throws the same kind of exception.
+     */
+    public HTMLTag next() {
+        if (this.index < this.available) {
+            return this.tokens.get(this.index++);
+        }
+        if (this.error != null) {
+            throw this.error;
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Returns true if there is another HTMLTag in the source String
+     * returns false otherwise.
+     */
+    public boolean hasNext() {
+        return this.index < this.available || this.error != null;
+    }
+
+    /**
+     * Throws UnsupportedOperationException
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,102 @@
+package edu.caltech.cs2.project03;
+
+/**
+ * Limits on the resources parsing one page may use, so that a hostile page
+ * fails fast with an HTMLParseException instead of stalling its thread.
+ *
+ * maxTokenLength bounds both the text of each token and how far ahead the
+ * parser looks for the end of one, so the work per token is bounded too.
+ * Depth counts opening tags that have not been closed, the same depth
+ * fixHTML's stack reaches at most. A timeoutMillis of 0 means no timeout.
+ */
+public record ParseLimits(int maxTokenLength, int maxDepth, long maxTokens, long timeoutMillis) {
+    /** No limits at all, which is how the parsers behave by default */
+    public static final ParseLimits UNLIMITED =
+            new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+    /** Limits generous enough for any real page */
+    public static final ParseLimits DEFAULT =
+            new ParseLimits(1024 * 1024, 4096, 100_000_000L, 30_000);
+
+    /**
+     * If maxTokenLength is less than 16, or any other limit is not positive,
+     * throws an IllegalArgumentException
+     */
+    public ParseLimits {
+        if (maxTokenLength < 16 || maxDepth < 1 || maxTokens < 1 || timeoutMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Returns a new Guard to enforce these limits on one page, or null if
+     * there are none
+     */
+    Guard guard() {
+        return this.equals(UNLIMITED) ? null : new Guard(this);
+    }
+
+    /**
+     * Tracks one page against the limits. Parsers pass every token they
+     * read to token(), which throws as soon as a limit is broken.
+     */
+    static final class Guard {
+        private final ParseLimits limits;
+        private final long deadline;
+        private long tokens;
+        private int depth;
+
+        private Guard(ParseLimits limits) {
+            this.limits = limits;
+            this.deadline = limits.timeoutMillis() == 0 ? 0 : System.nanoTime() + limits.timeoutMillis() * 1_000_000L;
+        }
+
+        /**
+         * Returns how far past the start of a token the parser may look for
+         * its end
+         */
+        int window() {
+            return (int) Math.min(Integer.MAX_VALUE - 8, 2L * this.limits.maxTokenLength());
+        }
+
+        /**
+         * Records a token of the given type and length starting at the given
+         * position. Void elements must be passed as SELF_CLOSING.
+         */
+        void token(HTMLTagType type, long length, long position) {
+            if (length > this.limits.maxTokenLength()) {
+                throw tooLong(position);
+            }
+            if (++this.tokens > this.limits.maxTokens()) {
+                throw new HTMLParseException(HTMLParseException.Reason.TOO_MANY_TOKENS, position,
+                        "More than " + this.limits.maxTokens() + " tokens");
+            }
+            if (type == HTMLTagType.OPENING) {
+                if (++this.depth > this.limits.maxDepth()) {
+                    throw new HTMLParseException(HTMLParseException.Reason.TOO_DEEP, position,
+                            "Tags nested deeper than " + this.limits.maxDepth());
+                }
+            } else if (type == HTMLTagType.CLOSING && this.depth > 0) {
+                this.depth--;
+            }
+            if ((this.tokens & 0xFF) == 0) {
+                checkTime(position);
+            }
+        }
+
+        /**
+         * Throws if the page has run out of time
+         */
+        void checkTime(long position) {
+            if (this.deadline != 0 && System.nanoTime() - this.deadline > 0) {
+                throw new HTMLParseException(HTMLParseException.Reason.TIMEOUT, position,
+                        "Parsing took longer than " + this.limits.timeoutMillis() + " ms");
+            }
+        }
+
+        HTMLParseException tooLong(long position) {
+            return new HTMLParseException(HTMLParseException.Reason.TOKEN_TOO_LONG, position,
+                    "Token longer than " + this.limits.maxTokenLength() + " chars");
+        }
+    }
+}
@@ -1,38 +1,138 @@
 package edu.caltech.cs2.project03;
 
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-public class Queue<E> {
-    private List<E> backing;
+/**
+ * A first-in, first-out queue backed by a growable circular array, so that
+ * enqueue, dequeue and peek all take amortized constant time.
+ */
+public class Queue<E> implements Iterable<E> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] backing;
+    private int head;
+    private int size;
+    private int modCount;
 
     public Queue() {
-        this.backing = new ArrayList<>();
+        this.backing = new Object[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Creates a queue holding the same elements, in the same order, as the
+     * given queue. The given queue is not modified.
+     */
+    public Queue(Queue<? extends E> other) {
+        this.backing = new Object[capacityFor(other.size)];
+        for (E elt : other) {
+            this.backing[this.size++] = elt;
+        }
+    }
+
+    /**
+     * Returns the smallest power of two that can hold the given number of
+     * elements, so that indices wrap with a mask instead of a division.
+     */
+    private static int capacityFor(int size) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void grow() {
+        Object[] larger = new Object[this.backing.length << 1];
+        int mask = this.backing.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            larger[i] = this.backing[(this.head + i) & mask];
+        }
+        this.backing = larger;
+        this.head = 0;
     }
 
     public void enqueue(E elt) {
-        this.backing.add(elt);
+        if (this.size == this.backing.length) {
+            grow();
+        }
+        this.backing[(this.head + this.size) & (this.backing.length - 1)] = elt;
+        this.size++;
+        this.modCount++;
     }
 
+    /**
+     * Adds every element of the given source to the end of this queue, in
+     * iteration order.
+     */
+    public void enqueueAll(Iterable<? extends E> source) {
+        for (E elt : source) {
+            this.enqueue(elt);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     public E peek() {
         if (this.isEmpty()) {
             throw new NoSuchElementException();
         }
-        return this.backing.get(0);
+        return (E) this.backing[this.head];
     }
 
     public E dequeue() {
         E result = this.peek();
-        this.backing.remove(0);
+        this.backing[this.head] = null;
+        this.head = (this.head + 1) & (this.backing.length - 1);
+        this.size--;
+        this.modCount++;
         return result;
     }
 
+    /**
+     * Removes every element from this queue and adds them, in order, to the
+     * given collection. Returns the number of elements moved.
+     */
+    public int drainTo(Collection<? super E> target) {
+        int moved = this.size;
+        while (!this.isEmpty()) {
+            target.add(this.dequeue());
+        }
+        return moved;
+    }
+
     public int size() {
-        return this.backing.size();
+        return this.size;
     }
 
     public boolean isEmpty() {
-        return this.backing.isEmpty();
+        return this.size == 0;
+    }
+
+    /**
+     * Returns an iterator over the elements from front to back, without
+     * removing them. The queue must not be modified during iteration.
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final int expectedModCount = modCount;
+            private int index = 0;
+
+            public boolean hasNext() {
+                return this.index < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (this.expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (E) backing[(head + this.index++) & (backing.length - 1)];
+            }
+        };
     }
 }
@@ -1,38 +1,91 @@
 package edu.caltech.cs2.project03;
 
-import java.util.List;
-import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-public class Stack<E> {
-    private List<E> backing;
+/**
+ * A last-in, first-out stack backed by a growable array, so that push, pop
+ * and peek all take amortized constant time.
+ */
+public class Stack<E> implements Iterable<E> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] backing;
+    private int size;
+    private int modCount;
 
     public Stack() {
-        this.backing = new ArrayList<>();
+        this.backing = new Object[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Creates a stack holding the same elements as the given stack, with
+     * the same element on top. The given stack is not modified.
+     */
+    public Stack(Stack<? extends E> other) {
+        this.backing = new Object[Math.max(DEFAULT_CAPACITY, other.size)];
+        System.arraycopy(other.backing, 0, this.backing, 0, other.size);
+        this.size = other.size;
     }
 
     public void push(E elt) {
-        this.backing.add(elt);
+        if (this.size == this.backing.length) {
+            Object[] larger = new Object[this.backing.length << 1];
+            System.arraycopy(this.backing, 0, larger, 0, this.size);
+            this.backing = larger;
+        }
+        this.backing[this.size++] = elt;
+        this.modCount++;
     }
 
+    @SuppressWarnings("unchecked")
     public E peek() {
         if (this.isEmpty()) {
             throw new NoSuchElementException();
         }
-        return this.backing.get(this.backing.size() - 1);
+        return (E) this.backing[this.size - 1];
     }
 
     public E pop() {
         E result = this.peek();
-        this.backing.remove(this.backing.size() - 1);
+        this.backing[--this.size] = null;
+        this.modCount++;
         return result;
     }
 
     public int size() {
-        return this.backing.size();
+        return this.size;
     }
 
     public boolean isEmpty() {
-        return this.backing.isEmpty();
+        return this.size == 0;
+    }
+
+    /**
+     * Returns an iterator over the elements from top to bottom, that is in
+     * the order pop would return them, without removing them. The stack
+     * must not be modified during iteration.
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final int expectedModCount = modCount;
+            private int index = size;
+
+            public boolean hasNext() {
+                return this.index > 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (this.expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (E) backing[--this.index];
+            }
+        };
     }
 }
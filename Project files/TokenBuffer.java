@@ -0,0 +1,389 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact sequence of tokens over a single source String. Instead of
+ * one HTMLTag per token, it keeps each token's type, element ID and the
+ * bounds of its text in the source in parallel primitive arrays, and only
+ * builds an HTMLTag when one is asked for.
+ *
+ * Tags that did not come from the source, such as ones added by hand,
+ * are kept as HTMLTag objects alongside the arrays.
+ */
+public class TokenBuffer implements Iterable<HTMLTag> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final HTMLTagType[] TYPES = HTMLTagType.values();
+
+    private final String source;
+    private byte[] types;
+    private int[] elementIds;
+    private int[] starts;
+    private int[] ends;
+    private HTMLTag[] detached;
+    private int size;
+
+    /**
+     * Creates an empty buffer whose tokens will point into the given source
+     */
+    public TokenBuffer(String source) {
+        this.source = source;
+        this.types = new byte[DEFAULT_CAPACITY];
+        this.elementIds = new int[DEFAULT_CAPACITY];
+        this.starts = new int[DEFAULT_CAPACITY];
+        this.ends = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Creates a buffer holding the same tokens as the given buffer. The
+     * given buffer is not modified.
+     */
+    public TokenBuffer(TokenBuffer other) {
+        this.source = other.source;
+        int capacity = Math.max(DEFAULT_CAPACITY, other.size);
+        this.types = Arrays.copyOf(other.types, capacity);
+        this.elementIds = Arrays.copyOf(other.elementIds, capacity);
+        this.starts = Arrays.copyOf(other.starts, capacity);
+        this.ends = Arrays.copyOf(other.ends, capacity);
+        this.detached = other.detached == null ? null : Arrays.copyOf(other.detached, capacity);
+        this.size = other.size;
+    }
+
+    /**
+     * Tokenizes the given page into a new buffer. If no token can be read
+     * at some point, throws an HTMLParseException.
+     */
+    public static TokenBuffer parse(String page) {
+        return parse(page, ParseLimits.UNLIMITED, null);
+    }
+
+    /**
+     * Tokenizes the given page into a new buffer, throwing an
+     * HTMLParseException as soon as the page breaks the given limits.
+     */
+    public static TokenBuffer parse(String page, ParseLimits limits) {
+        return parse(page, limits, null);
+    }
+
+    /**
+     * Tokenizes the given page, from the source with the given name, into
+     * a new buffer.
+     */
+    static TokenBuffer parse(String page, ParseLimits limits, String name) {
+        HTMLParseEvent event = new HTMLParseEvent();
+        event.begin();
+        long start = HTMLInstrumentation.start();
+
+        TokenBuffer tokens = new TokenBuffer(page);
+        HTMLTokenizer tokenizer = new HTMLTokenizer(page);
+        tokenizer.setLimits(limits);
+        while (tokenizer.hasNext()) {
+            tokens.addNext(tokenizer);
+        }
+        tokens.trimToSize();
+
+        event.end();
+        tokens.report(event, name, start);
+        return tokens;
+    }
+
+    /**
+     * Reports this buffer as a tokenized page, if anything is listening
+     */
+    void report(HTMLParseEvent event, String name, long start) {
+        long nanos = HTMLInstrumentation.elapsed(start);
+        if (HTMLInstrumentation.wanted(event)) {
+            long[] counts = new long[TYPES.length];
+            for (int i = 0; i < this.size; i++) {
+                counts[this.types[i]]++;
+            }
+            HTMLInstrumentation.tokenized(event, name, this.source.length(), counts, nanos);
+        }
+    }
+
+    /**
+     * Moves the given tokenizer, which must be over this buffer's source,
+     * past its next token and appends that token. Throws an
+     * HTMLParseException without appending anything if no token starts at
+     * the tokenizer's cursor.
+     */
+    void addNext(HTMLTokenizer tokenizer) {
+        HTMLTagType type = tokenizer.skip();
+        int id = HTMLElementTable.NONE;
+        if (type != HTMLTagType.COMMENT && type != HTMLTagType.CONTENT) {
+            id = tokenizer.elementId();
+            if (HTMLElementTable.isSelfClosing(id)) {
+                type = HTMLTagType.SELF_CLOSING;
+            }
+        }
+        this.addToken(type, id, tokenizer.dataStart(), tokenizer.dataEnd());
+    }
+
+    /**
+     * Shrinks the arrays to exactly the number of tokens held.
+     */
+    public void trimToSize() {
+        resize(Math.max(1, this.size));
+    }
+
+    private void ensureCapacity() {
+        if (this.size == this.types.length) {
+            resize(Math.max(DEFAULT_CAPACITY, 2 * this.types.length));
+        }
+    }
+
+    private void resize(int capacity) {
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.elementIds = Arrays.copyOf(this.elementIds, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.ends = Arrays.copyOf(this.ends, capacity);
+        if (this.detached != null) {
+            this.detached = Arrays.copyOf(this.detached, capacity);
+        }
+    }
+
+    /**
+     * Appends a token whose text is the given range of the source.
+     */
+    void addToken(HTMLTagType type, int elementId, int start, int end) {
+        ensureCapacity();
+        this.types[this.size] = (byte) type.ordinal();
+        this.elementIds[this.size] = elementId;
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.size++;
+    }
+
+    /**
+     * Appends the given tag, which need not come from the source.
+     */
+    public void add(HTMLTag tag) {
+        if (tag == null) {
+            throw new IllegalArgumentException();
+        }
+        ensureCapacity();
+        if (this.detached == null) {
+            this.detached = new HTMLTag[this.types.length];
+        }
+        this.detached[this.size] = tag;
+        this.types[this.size] = (byte) tag.getType().ordinal();
+        this.elementIds[this.size] = tag.getElementId();
+        this.size++;
+    }
+
+    /**
+     * Drops every token from the given index on, keeping the arrays.
+     */
+    void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException(size);
+        }
+        if (this.detached != null) {
+            Arrays.fill(this.detached, size, this.size, null);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Appends token i of the given buffer, which must share this buffer's
+     * source.
+     */
+    void addCopy(TokenBuffer from, int i) {
+        HTMLTag tag = from.detached(i);
+        if (tag != null) {
+            this.add(tag);
+        } else {
+            this.addToken(from.type(i), from.elementIds[i], from.starts[i], from.ends[i]);
+        }
+    }
+
+    /**
+     * Appends tokens start to end - 1 of the given buffer, which must share
+     * this buffer's source.
+     */
+    void addAll(TokenBuffer from, int start, int end) {
+        int count = end - start;
+        if (from.detached != null) {
+            for (int i = start; i < end; i++) {
+                this.addCopy(from, i);
+            }
+            return;
+        }
+        if (this.size + count > this.types.length) {
+            resize(Math.max(this.size + count, 2 * this.types.length));
+        }
+        System.arraycopy(from.types, start, this.types, this.size, count);
+        System.arraycopy(from.elementIds, start, this.elementIds, this.size, count);
+        System.arraycopy(from.starts, start, this.starts, this.size, count);
+        System.arraycopy(from.ends, start, this.ends, this.size, count);
+        this.size += count;
+    }
+
+    /**
+     * Appends the tag that matches token i of the given buffer, which must
+     * share this buffer's source, as HTMLTag.getMatching would.
+     */
+    void addMatching(TokenBuffer from, int i) {
+        HTMLTag tag = from.detached(i);
+        if (tag != null) {
+            this.add(tag.getMatching());
+            return;
+        }
+
+        HTMLTagType type = from.type(i);
+        if (type == HTMLTagType.OPENING) {
+            type = HTMLTagType.CLOSING;
+        } else if (type == HTMLTagType.CLOSING) {
+            type = HTMLTagType.OPENING;
+        }
+
+        // Point at just the element name, so that the matching tag has
+        // no attributes
+        int start = from.starts[i];
+        int end = from.ends[i];
+        while (start < end && this.source.charAt(start) <= ' ') {
+            start++;
+        }
+        int nameEnd = start;
+        while (nameEnd < end && (this.source.charAt(nameEnd) == '\r'
+                || !AttributeScanner.isSpace(this.source.charAt(nameEnd)))) {
+            nameEnd++;
+        }
+        this.addToken(type, from.elementIds[i], start, nameEnd);
+    }
+
+    /**
+     * Returns token i if it did not come from the source, or else null
+     */
+    HTMLTag detached(int i) {
+        return this.detached == null ? null : this.detached[i];
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * Returns the index in the source where the text of the token at the
+     * given index starts.
+     */
+    int start(int i) {
+        return this.starts[i];
+    }
+
+    /**
+     * Returns the index in the source just past the text of the token at
+     * the given index.
+     */
+    int end(int i) {
+        return this.ends[i];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the type of token i
+     */
+    public HTMLTagType type(int i) {
+        checkIndex(i);
+        return TYPES[this.types[i]];
+    }
+
+    /**
+     * Returns the HTMLElementTable ID of the element of token i
+     */
+    public int elementId(int i) {
+        checkIndex(i);
+        return this.elementIds[i];
+    }
+
+    /**
+     * Returns true if tokens i and j are for the same element, as
+     * HTMLTag.matchEquals would decide.
+     */
+    public boolean sameElement(int i, int j) {
+        int a = elementId(i);
+        int b = elementId(j);
+        if (a != HTMLElementTable.UNKNOWN && b != HTMLElementTable.UNKNOWN) {
+            return a == b;
+        }
+        return get(i).matchEquals(get(j));
+    }
+
+    /**
+     * Returns token i as an HTMLTag. Tokens read from the source get a new
+     * HTMLTag on every call.
+     */
+    public HTMLTag get(int i) {
+        checkIndex(i);
+        HTMLTag tag = detached(i);
+        if (tag != null) {
+            return tag;
+        }
+        return new HTMLTag(this.source.substring(this.starts[i], this.ends[i]), TYPES[this.types[i]]);
+    }
+
+    /**
+     * Writes token i to the given output as get(i).toString() would read.
+     * Content and comments read from the source are copied straight from
+     * it without building an HTMLTag.
+     */
+    public void appendTo(int i, Appendable out) throws IOException {
+        checkIndex(i);
+        HTMLTagType type = TYPES[this.types[i]];
+        if (detached(i) != null || (type != HTMLTagType.CONTENT && type != HTMLTagType.COMMENT)) {
+            get(i).appendTo(out);
+        } else if (type == HTMLTagType.COMMENT) {
+            out.append("<!--");
+            appendSource(this.starts[i], this.ends[i], out);
+            out.append("-->");
+        } else {
+            appendSource(this.starts[i], this.ends[i], out);
+        }
+    }
+
+    private void appendSource(int start, int end, Appendable out) throws IOException {
+        // Writer.append would copy the range into a new String first
+        if (out instanceof Writer) {
+            ((Writer) out).write(this.source, start, end - start);
+        } else {
+            out.append(this.source, start, end);
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+
+    /**
+     * Returns an iterator that builds the HTMLTag for each token in turn.
+     */
+    public Iterator<HTMLTag> iterator() {
+        return new Iterator<HTMLTag>() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return this.index < size;
+            }
+
+            public HTMLTag next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(this.index++);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package edu.caltech.cs2.project03;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks how much memory a TokenBuffer takes per token.
+ */
+public class TokenBufferTest {
+	public static void main(String[] args) {
+		int failures = checkMemory();
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that a TokenBuffer holds a page in at least five times fewer
+	 * bytes per token than a List of HTMLTags. The buffer's share is what
+	 * copying it allocates, which is exactly its arrays, and the list's is
+	 * what building it allocates beyond what the tokenizer does alone.
+	 */
+	private static int checkMemory() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean allocations)) {
+			return 0;
+		}
+		long thread = Thread.currentThread().getId();
+		String page = CorpusGenerator.repeatedPage(256 * 1024);
+		int tokens = 0;
+		long buffer = 0;
+		long list = 0;
+		for (int run = 0; run < 4; run++) {
+			TokenBuffer parsed = TokenBuffer.parse(page);
+			tokens = parsed.size();
+			long before = allocations.getThreadAllocatedBytes(thread);
+			TokenBuffer copy = new TokenBuffer(parsed);
+			buffer = allocations.getThreadAllocatedBytes(thread) - before;
+
+			before = allocations.getThreadAllocatedBytes(thread);
+			HTMLTokenizer skipped = new HTMLTokenizer(page);
+			while (skipped.hasNext()) {
+				skipped.skip();
+			}
+			long tokenizer = allocations.getThreadAllocatedBytes(thread) - before;
+
+			before = allocations.getThreadAllocatedBytes(thread);
+			List<HTMLTag> tags = new ArrayList<>();
+			HTMLTokenizer tokenized = new HTMLTokenizer(page);
+			while (tokenized.hasNext()) {
+				tags.add(tokenized.next());
+			}
+			list = allocations.getThreadAllocatedBytes(thread) - before - tokenizer;
+			if (copy.size() != tags.size()) {
+				System.out.println("TokenBuffer has " + copy.size() + " tokens and the list " + tags.size());
+				return 1;
+			}
+		}
+		if (list < 5 * buffer) {
+			System.out.printf("TokenBuffer takes %.1f bytes per token and a List of HTMLTags %.1f%n",
+					(double) buffer / tokens, (double) list / tokens);
+			return 1;
+		}
+		return 0;
+	}
+}
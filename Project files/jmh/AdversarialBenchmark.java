@@ -0,0 +1,94 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses pages built to make parsers slow, in every HTMLParserMode,
+ * without limits and under ParseLimits.DEFAULT, until they end or fail.
+ * If the worst case is linear, the time at the larger size is about
+ * sixteen times that at the smaller.
+ *
+ *   close-no-gt       content followed by many "</" and no '>'
+ *   close-spaces      a '>' after the content, then "</", spaces and no '>'
+ *   tag-spaces        a tag of spaces that can never match
+ *   unclosed-tag      a tag with many attributes and no '>'
+ *   unclosed-comment  a comment that never ends
+ *   lt-content        content with a '<' every other character
+ *   deep              tags that are never closed
+ *   tiny-tokens       as many tokens as possible
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdversarialBenchmark {
+    @Param({"close-no-gt", "close-spaces", "tag-spaces", "unclosed-tag", "unclosed-comment", "lt-content",
+            "deep", "tiny-tokens"})
+    public String shape;
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    @Param({"REGEX", "STATE_MACHINE"})
+    public HTMLParserMode mode;
+
+    @Param({"UNLIMITED", "DEFAULT"})
+    public String limits;
+
+    private String page;
+    private ParseLimits parseLimits;
+
+    @Setup
+    public void setUp() {
+        this.page = page(this.shape, this.size);
+        this.parseLimits = this.limits.equals("DEFAULT") ? ParseLimits.DEFAULT : ParseLimits.UNLIMITED;
+    }
+
+    @Benchmark
+    public int parse() {
+        int tokens = 0;
+        try {
+            Iterator<HTMLTag> parser = this.mode.parser(this.page, this.parseLimits);
+            while (parser.hasNext()) {
+                parser.next();
+                tokens++;
+            }
+        } catch (HTMLParseException e) {
+            // Most of these pages fail, after as much work as they can cause
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the page of the given shape and about the given size. If the
+     * shape is unknown, throws an IllegalArgumentException.
+     */
+    static String page(String shape, int size) {
+        return switch (shape) {
+            case "close-no-gt" -> "x" + "</".repeat(size / 2);
+            case "close-spaces" -> "<p>a>b</" + " ".repeat(size) + "x";
+            case "tag-spaces" -> "<" + " ".repeat(size) + "a//>";
+            case "unclosed-tag" -> "<a" + " b='c'".repeat(size / 6);
+            case "unclosed-comment" -> "<!--" + "- ".repeat(size / 2);
+            case "lt-content" -> "<p>" + "a<".repeat(size / 2) + "</p>";
+            case "deep" -> "<div>".repeat(size / 5);
+            case "tiny-tokens" -> "<b/>".repeat(size / 4);
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+    }
+}
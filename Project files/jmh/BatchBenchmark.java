@@ -0,0 +1,84 @@
+package edu.caltech.cs2.project03;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processes a directory of pages with BatchProcessor on a number of
+ * threads. The time should fall about in proportion to the threads, up to
+ * the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    private static final int FILES = 64;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    @Param({"65536"})
+    public int size;
+
+    private Path input;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.input = Files.createTempDirectory("batch-in");
+        this.output = Files.createTempDirectory("batch-out");
+        String page = CorpusGenerator.repeatedPage(this.size);
+        for (int i = 0; i < FILES; i++) {
+            Path dir = Files.createDirectories(this.input.resolve("dir" + (i % 16)));
+            Files.writeString(dir.resolve("page" + i + ".html"), page);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(this.input);
+        delete(this.output);
+    }
+
+    @Benchmark
+    public BatchProcessor.Summary process() throws IOException {
+        BatchProcessor processor = new BatchProcessor(this.threads, this.output);
+        try {
+            BatchProcessor.Summary summary = processor.process(this.input);
+            if (summary.failures() > 0) {
+                throw new IllegalStateException(summary.toString());
+            }
+            return summary;
+        } finally {
+            processor.getExecutor().shutdown();
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Random;
+
+/**
+ * The pages and tags the JMH benchmarks run on. Pages come in three
+ * shapes:
+ *
+ *   flat       the well-formed page of CorpusGenerator.repeatedPage
+ *   deep       chains of tags nested DEPTH deep, one after another
+ *   malformed  tags opened and closed at random, mostly unbalanced
+ *
+ * The same arguments always give the same page.
+ */
+final class BenchmarkPages {
+    // Every line of toString is indented by its depth, so much deeper
+    // chains make the printed page quadratically larger than the source
+    static final int DEPTH = 100;
+
+    private static final String[] MALFORMED = {
+        "<p>", "<b>", "<i>", "<div class=\"x\">", "<li>", "</p>", "</b>", "</div>",
+        "</span>", "<br>", "text ", "more text\n", "<!-- note -->"
+    };
+
+    private BenchmarkPages() {
+    }
+
+    /**
+     * Returns a page of about the given size in the given shape. If the
+     * shape is unknown, throws an IllegalArgumentException.
+     */
+    static String page(String shape, int size) {
+        if (shape.equals("flat")) {
+            return CorpusGenerator.repeatedPage(size);
+        }
+
+        StringBuilder page = new StringBuilder(size + 64);
+        if (shape.equals("deep")) {
+            while (page.length() < size) {
+                page.append("<div>".repeat(DEPTH)).append("text").append("</div>".repeat(DEPTH));
+            }
+        } else if (shape.equals("malformed")) {
+            Random random = new Random(size);
+            while (page.length() < size) {
+                page.append(MALFORMED[random.nextInt(MALFORMED.length)]);
+            }
+            // Trailing text needs a closing tag after it to be read at all
+            page.append("</p>");
+        } else {
+            throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        return page.toString();
+    }
+
+    /**
+     * Returns the text of an "a" tag with the given number of attributes,
+     * in every quoting style.
+     */
+    static String tagWithAttributes(int count) {
+        StringBuilder text = new StringBuilder("a");
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0 -> text.append(" data-").append(i).append("=\"value ").append(i).append('"');
+                case 1 -> text.append(" title").append(i).append("='say \"hi\"'");
+                case 2 -> text.append(" width").append(i).append(" = ").append(i);
+                default -> text.append(" hidden").append(i);
+            }
+        }
+        return text.toString();
+    }
+}
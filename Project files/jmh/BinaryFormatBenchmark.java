@@ -0,0 +1,95 @@
+package edu.caltech.cs2.project03;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a page's tags from the binary form written by HTMLTagWriter, from
+ * a byte array, a mapped file and a file stream, against parsing the page
+ * again with HTMLPage.parse.
+ *
+ * Tags loaded from the binary form have their attributes split already,
+ * while parsed tags split them only when asked, so the comparison favors
+ * parsing on pages with many attributes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryFormatBenchmark {
+    @Param({"MIXED", "ATTRIBUTES", "SCRIPTS", "COMMENTS"})
+    public CorpusProfile profile;
+
+    @Param({"1048576"})
+    public int size;
+
+    private String page;
+    private byte[] data;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.page = CorpusGenerator.generate(this.profile, 1, this.size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (HTMLTagWriter writer = new HTMLTagWriter(out)) {
+            writer.writeAll(new HTMLPage(this.page).parse(HTMLParserMode.STATE_MACHINE).iterator());
+        }
+        this.data = out.toByteArray();
+        this.file = File.createTempFile("tags", ".bin");
+        Files.write(this.file.toPath(), this.data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Queue<HTMLTag> parseRegex() {
+        return new HTMLPage(this.page).parse(HTMLParserMode.REGEX);
+    }
+
+    @Benchmark
+    public Queue<HTMLTag> parseStateMachine() {
+        return new HTMLPage(this.page).parse(HTMLParserMode.STATE_MACHINE);
+    }
+
+    @Benchmark
+    public Queue<HTMLTag> readBytes() {
+        return new HTMLTagReader(ByteBuffer.wrap(this.data)).readAll();
+    }
+
+    @Benchmark
+    public Queue<HTMLTag> readMapped() throws IOException {
+        try (HTMLTagReader reader = HTMLTagReader.open(this.file)) {
+            return reader.readAll();
+        }
+    }
+
+    @Benchmark
+    public Queue<HTMLTag> readStream() throws IOException {
+        try (HTMLTagReader reader = new HTMLTagReader(new FileInputStream(this.file))) {
+            return reader.readAll();
+        }
+    }
+}
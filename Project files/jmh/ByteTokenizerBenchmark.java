@@ -0,0 +1,80 @@
+package edu.caltech.cs2.project03;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizes a page's UTF-8 bytes with HTMLByteTokenizer, against decoding
+ * them into a String and tokenizing that with HTMLTokenizer. The tags
+ * benchmarks only read each tag's type and element; the text benchmarks
+ * also print every tag, which decodes all of the text the byte tokenizer
+ * left as bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteTokenizerBenchmark {
+    @Param({"MIXED", "ATTRIBUTES", "SCRIPTS", "COMMENTS"})
+    public CorpusProfile profile;
+
+    @Param({"1048576"})
+    public int size;
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        this.page = CorpusGenerator.generate(this.profile, 1, this.size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long charTags() {
+        return read(new HTMLTokenizer(new String(this.page, StandardCharsets.UTF_8)), false);
+    }
+
+    @Benchmark
+    public long byteTags() {
+        return read(new HTMLByteTokenizer(this.page), false);
+    }
+
+    @Benchmark
+    public long charText() {
+        return read(new HTMLTokenizer(new String(this.page, StandardCharsets.UTF_8)), true);
+    }
+
+    @Benchmark
+    public long byteText() {
+        return read(new HTMLByteTokenizer(this.page), true);
+    }
+
+    /**
+     * Reads every tag and, if asked, prints each one
+     */
+    private static long read(Iterator<HTMLTag> tags, boolean text) {
+        long total = 0;
+        while (tags.hasNext()) {
+            HTMLTag tag = tags.next();
+            total += tag.getType().ordinal() + tag.getElementId();
+            if (text) {
+                total += tag.toString().length();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,121 @@
+package edu.caltech.cs2.project03;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finds where each run of content in a page ends: with the regex find()
+ * HTMLParser used to run from the start of the content, and by trying the
+ * pattern only at each '<' DelimiterScanner.indexOf finds. Then finds
+ * every '<' in the page's UTF-8 bytes one byte at a time and a word at a
+ * time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelimiterScanBenchmark {
+    private static final Pattern TAG_SCRIPT = Pattern.compile("<\\s*/\\s*script\\s*>");
+    private static final Pattern TAG_CLOSE = Pattern.compile("<\\s*/\\s*(?<tagData>[^>]+)\\s*>");
+
+    @Param({"TEXT", "SCRIPTS", "MIXED"})
+    public CorpusProfile profile;
+
+    @Param({"1048576"})
+    public int size;
+
+    private String page;
+    private byte[] bytes;
+    // The start of every run of content, and whether it is a script
+    private int[] starts;
+    private boolean[] scripts;
+    private Matcher close;
+    private Matcher scriptClose;
+
+    @Setup
+    public void setUp() {
+        this.page = CorpusGenerator.generate(this.profile, 1, this.size);
+        this.bytes = this.page.getBytes(StandardCharsets.UTF_8);
+        int script = HTMLElementTable.id("script");
+        TokenBuffer tokens = TokenBuffer.parse(this.page);
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            count += tokens.type(i) == HTMLTagType.CONTENT ? 1 : 0;
+        }
+        this.starts = new int[count];
+        this.scripts = new boolean[count];
+        for (int i = 0, j = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == HTMLTagType.CONTENT) {
+                this.starts[j] = tokens.start(i);
+                this.scripts[j++] = i > 0 && tokens.type(i - 1) == HTMLTagType.OPENING
+                        && tokens.elementId(i - 1) == script;
+            }
+        }
+        this.close = TAG_CLOSE.matcher(this.page);
+        this.scriptClose = TAG_SCRIPT.matcher(this.page);
+        if (regexFind() != scannerFind()) {
+            throw new IllegalStateException("The scanner and the regex disagree on " + this.profile);
+        }
+    }
+
+    @Benchmark
+    public long regexFind() {
+        long sum = 0;
+        for (int i = 0; i < this.starts.length; i++) {
+            Matcher m = (this.scripts[i] ? this.scriptClose : this.close).region(this.starts[i], this.page.length());
+            sum += m.find() ? m.start() : -1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scannerFind() {
+        long sum = 0;
+        int end = this.page.length();
+        for (int i = 0; i < this.starts.length; i++) {
+            Matcher m = this.scripts[i] ? this.scriptClose : this.close;
+            int at = DelimiterScanner.indexOf(this.page, '<', this.starts[i], end);
+            while (at >= 0 && !m.region(at, end).lookingAt()) {
+                at = DelimiterScanner.indexOf(this.page, '<', at + 1, end);
+            }
+            sum += at;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scalarBytes() {
+        long sum = 0;
+        for (int i = DelimiterScanner.indexOfScalar(this.bytes, (byte) '<', 0, this.bytes.length); i >= 0;
+                i = DelimiterScanner.indexOfScalar(this.bytes, (byte) '<', i + 1, this.bytes.length)) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long swarBytes() {
+        long sum = 0;
+        for (int i = DelimiterScanner.indexOf(this.bytes, (byte) '<', 0, this.bytes.length); i >= 0;
+                i = DelimiterScanner.indexOf(this.bytes, (byte) '<', i + 1, this.bytes.length)) {
+            sum += i;
+        }
+        return sum;
+    }
+}
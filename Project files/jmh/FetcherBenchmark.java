@@ -0,0 +1,149 @@
+package edu.caltech.cs2.project03;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fetches and parses pages from a local server with HTMLFetcher, against
+ * fetching them one at a time with HTMLPage(URL). The server waits a
+ * fixed delay before each response, to stand in for the network, and
+ * gzips responses if asked to. Times are per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetcherBenchmark {
+    private static final int PAGES = 32;
+    private static final int SEQUENTIAL = 20;
+    private static final int CONCURRENT = 200;
+    private static final int DELAY_MILLIS = 10;
+
+    @Param({"16384"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean gzip;
+
+    @Param({"32"})
+    public int maxRequests;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private HTMLFetcher fetcher;
+    private String base;
+
+    @Setup
+    public void setUp() throws IOException {
+        // So that responses do not wait out delayed ACKs
+        HTMLServer.useNoDelay();
+        byte[][] bodies = new byte[PAGES][];
+        byte[][] gzipped = new byte[PAGES][];
+        for (int i = 0; i < PAGES; i++) {
+            bodies[i] = CorpusGenerator.generate(CorpusProfile.MIXED, i, this.size).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(bodies[i]);
+            }
+            gzipped[i] = out.toByteArray();
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.serverThreads = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.serverThreads);
+        this.server.createContext("/page/", exchange -> {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                int i = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = bodies[i];
+                if (this.gzip && accept != null && accept.contains("gzip")) {
+                    body = gzipped[i];
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                Thread.sleep(DELAY_MILLIS);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        this.server.start();
+        this.base = "http://localhost:" + this.server.getAddress().getPort() + "/page/";
+        this.fetcher = new HTMLFetcher(this.maxRequests, this.maxRequests, Duration.ofSeconds(30),
+                ParseLimits.DEFAULT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.fetcher.close();
+        this.server.stop(0);
+        this.serverThreads.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENTIAL)
+    public int oneAtATime() throws IOException {
+        int tags = 0;
+        for (int i = 0; i < SEQUENTIAL; i++) {
+            tags += new HTMLPage(new URL(this.base + (i % PAGES))).parse(HTMLParserMode.STATE_MACHINE).size();
+        }
+        return tags;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT)
+    public int fetcher() throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Integer>> fetched = new ArrayList<>(CONCURRENT);
+        for (int i = 0; i < CONCURRENT; i++) {
+            fetched.add(this.fetcher.fetch(URI.create(this.base + (i % PAGES)), (uri, tags) -> {
+                int tokens = 0;
+                while (tags.hasNext()) {
+                    tags.next();
+                    tokens++;
+                }
+                return tokens;
+            }));
+        }
+        int tags = 0;
+        for (CompletableFuture<Integer> fetch : fetched) {
+            tags += fetch.get();
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,78 @@
+package edu.caltech.cs2.project03;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds a page to HTMLManager a batch of tags at a time, with fixHTML
+ * called after every batch, as an editor or a stream would. fixHTML only
+ * fixes the batch just added; for comparison, every batch is also fixed
+ * by fixing the whole collection again, which is what fixHTML used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalFixBenchmark {
+    @Param({"10", "100", "1000"})
+    public int batch;
+
+    @Param({"262144"})
+    public int size;
+
+    private HTMLTag[] page;
+
+    @Setup
+    public void setUp() {
+        TokenBuffer parsed = TokenBuffer.parse(CorpusGenerator.generate(CorpusProfile.MIXED, 1, this.size));
+        this.page = new HTMLTag[parsed.size()];
+        for (int i = 0; i < this.page.length; i++) {
+            this.page[i] = parsed.get(i);
+        }
+        if (!run(false).toString().equals(run(true).toString())) {
+            throw new IllegalStateException("Fixing each batch and fixing everything again disagree");
+        }
+    }
+
+    @Benchmark
+    public HTMLManager incremental() {
+        return run(false);
+    }
+
+    @Benchmark
+    public HTMLManager full() {
+        return run(true);
+    }
+
+    /**
+     * Adds the page's tags to a new manager in batches, fixing it after
+     * each batch, and returns it. If asked, each fix is of the whole
+     * collection, by fixing a new manager holding a copy of it.
+     */
+    private HTMLManager run(boolean full) {
+        HTMLManager manager = new HTMLManager(new Queue<>());
+        for (int i = 0; i < this.page.length; i++) {
+            manager.add(this.page[i]);
+            if ((i + 1) % this.batch == 0 || i == this.page.length - 1) {
+                if (full) {
+                    manager = new HTMLManager(manager.tokens());
+                }
+                manager.fixHTML();
+            }
+        }
+        return manager;
+    }
+}
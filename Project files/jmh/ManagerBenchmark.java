@@ -0,0 +1,55 @@
+package edu.caltech.cs2.project03;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fixes a parsed page with HTMLManager.fixHTML, and prints a fixed page
+ * with toString.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManagerBenchmark {
+    @Param({"flat", "deep", "malformed"})
+    public String shape;
+
+    @Param({"16384", "1048576"})
+    public int size;
+
+    private TokenBuffer tokens;
+    private HTMLManager fixed;
+
+    @Setup
+    public void setUp() {
+        this.tokens = TokenBuffer.parse(BenchmarkPages.page(this.shape, this.size));
+        this.fixed = new HTMLManager(this.tokens);
+        this.fixed.fixHTML();
+    }
+
+    @Benchmark
+    public HTMLManager fixHTML() {
+        HTMLManager manager = new HTMLManager(this.tokens);
+        manager.fixHTML();
+        return manager;
+    }
+
+    @Benchmark
+    public String print() {
+        return this.fixed.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package edu.caltech.cs2.project03;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads and tokenizes a file through a FileInputStream, against doing the
+ * same through a MappedFileReader. Loading holds the whole page in
+ * memory, so larger files need a larger -Xmx.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedFileBenchmark {
+    @Param({"16", "64"})
+    public int megabytes;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("page", ".html");
+        Files.writeString(this.file.toPath(), CorpusGenerator.repeatedPage(this.megabytes * 1024 * 1024));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public String loadStream() throws IOException {
+        return load(new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String loadMapped() throws IOException {
+        return load(new MappedFileReader(this.file));
+    }
+
+    @Benchmark
+    public String loadPage() {
+        return new HTMLPage(this.file).unparsedPage;
+    }
+
+    @Benchmark
+    public int tokenizeStream() throws IOException {
+        try (FileInputStream in = new FileInputStream(this.file)) {
+            return TokenizerBenchmark.skipTokens(new HTMLTokenizer(in));
+        }
+    }
+
+    @Benchmark
+    public int tokenizeMapped() throws IOException {
+        try (MappedFileReader in = new MappedFileReader(this.file)) {
+            return TokenizerBenchmark.skipTokens(new HTMLTokenizer(in));
+        }
+    }
+
+    /**
+     * Reads the whole source into a String, the way HTMLPage does, and
+     * closes it.
+     */
+    private static String load(Reader in) throws IOException {
+        try (in) {
+            StringBuilder page = new StringBuilder();
+            char[] chunk = new char[HTMLTokenizer.DEFAULT_BUFFER_SIZE];
+            int read = in.read(chunk);
+            while (read >= 0) {
+                page.append(chunk, 0, read);
+                read = in.read(chunk);
+            }
+            return page.toString();
+        }
+    }
+}
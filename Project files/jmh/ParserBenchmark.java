@@ -0,0 +1,66 @@
+package edu.caltech.cs2.project03;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads every tag of a page with HTMLParser.next, through the REGEX and
+ * STATE_MACHINE modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"flat", "deep", "malformed"})
+    public String shape;
+
+    @Param({"16384", "1048576"})
+    public int size;
+
+    @Param({"REGEX", "STATE_MACHINE"})
+    public HTMLParserMode mode;
+
+    private String page;
+
+    @Setup
+    public void setUp() {
+        this.page = BenchmarkPages.page(this.shape, this.size);
+    }
+
+    @Benchmark
+    public int next() {
+        return countTokens(this.mode.parser(this.page));
+    }
+
+    /**
+     * Runs the parser over the whole page and returns the number of tags
+     * produced before the end or the first point where none can be read.
+     */
+    static int countTokens(Iterator<HTMLTag> parser) {
+        int tokens = 0;
+        try {
+            while (parser.hasNext()) {
+                parser.next();
+                tokens++;
+            }
+        } catch (HTMLParseException e) {
+            // Malformed pages are counted up to where parsing failed
+        }
+        return tokens;
+    }
+}
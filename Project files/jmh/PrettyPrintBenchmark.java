@@ -0,0 +1,92 @@
+package edu.caltech.cs2.project03;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Prints a fixed page with HTMLManager.writeTo, both to a file and to a
+ * Writer that discards its output, against the String concatenation
+ * toString used to do. The concatenation is quadratic, so the pages are
+ * kept small.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrettyPrintBenchmark {
+    @Param({"65536", "262144"})
+    public int size;
+
+    private HTMLManager manager;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        // The parser reads "<b>" inside text as content, so the page needs
+        // fixing before its indent is well defined
+        this.manager = new HTMLManager(TokenBuffer.parse(CorpusGenerator.repeatedPage(this.size)));
+        this.manager.fixHTML();
+        this.file = File.createTempFile("pretty", ".html");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public void writeToNull() throws IOException {
+        this.manager.writeTo(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeToFile() throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file),
+                StandardCharsets.UTF_8))) {
+            this.manager.writeTo(out);
+        }
+    }
+
+    /**
+     * Prints the manager the way toString did before it streamed.
+     */
+    @Benchmark
+    public String concatenate() {
+        int indent = 0;
+        String result = "";
+        for (HTMLTag tag : this.manager.getTags()) {
+            if (tag.isOpening()) {
+                result += ("  ").repeat(indent);
+                indent++;
+            } else if (tag.isClosing()) {
+                indent--;
+                result += ("  ").repeat(indent);
+            } else {
+                result += ("  ").repeat(indent);
+            }
+            result += tag + "\n";
+        }
+        return result;
+    }
+}
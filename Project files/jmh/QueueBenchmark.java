@@ -0,0 +1,60 @@
+package edu.caltech.cs2.project03;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills and drains a Queue, and runs the HTMLManager operations built on
+ * it, on a queue of roughly the given number of tags. The time per
+ * element should stay roughly flat as the number of elements grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private Queue<HTMLTag> tags;
+
+    @Setup
+    public void setUp() {
+        // The page averages about 11 characters per tag
+        this.tags = new HTMLPage(CorpusGenerator.repeatedPage(this.size * 11)).parse(HTMLParserMode.STATE_MACHINE);
+    }
+
+    @Benchmark
+    public int fillAndDrain() {
+        Queue<Integer> q = new Queue<>();
+        for (int i = 0; i < this.size; i++) {
+            q.enqueue(i);
+        }
+        int sum = 0;
+        while (!q.isEmpty()) {
+            sum += q.dequeue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public HTMLManager manage() {
+        HTMLManager manager = new HTMLManager(this.tags);
+        manager.getTags();
+        manager.fixHTML();
+        return manager;
+    }
+}
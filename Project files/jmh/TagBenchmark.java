@@ -0,0 +1,48 @@
+package edu.caltech.cs2.project03;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds an HTMLTag from the text of a tag with many attributes, and
+ * splits its attributes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagBenchmark {
+    @Param({"0", "8", "64"})
+    public int attributes;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        this.text = BenchmarkPages.tagWithAttributes(this.attributes);
+    }
+
+    @Benchmark
+    public HTMLTag construct() {
+        return new HTMLTag(this.text, HTMLTagType.OPENING);
+    }
+
+    @Benchmark
+    public List<HTMLTag.Attribute> attributes() {
+        return new HTMLTag(this.text, HTMLTagType.OPENING).attributes();
+    }
+}
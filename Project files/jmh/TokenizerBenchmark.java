@@ -0,0 +1,70 @@
+package edu.caltech.cs2.project03;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Passes every token of a page with HTMLTokenizer.skip, without building
+ * HTMLTags, from a String and streamed from a Reader through the
+ * tokenizer's window.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+    @Param({"flat", "deep", "malformed"})
+    public String shape;
+
+    @Param({"16384", "1048576"})
+    public int size;
+
+    private String page;
+
+    @Setup
+    public void setUp() {
+        this.page = BenchmarkPages.page(this.shape, this.size);
+    }
+
+    @Benchmark
+    public int skip() {
+        return skipTokens(new HTMLTokenizer(this.page));
+    }
+
+    @Benchmark
+    public int stream() {
+        return skipTokens(new HTMLTokenizer(new StringReader(this.page)));
+    }
+
+    /**
+     * Runs the tokenizer over the whole page and returns the number of
+     * tokens found before the end or the first point where none can be
+     * read.
+     */
+    static int skipTokens(HTMLTokenizer tokenizer) {
+        int tokens = 0;
+        try {
+            while (tokenizer.hasNext()) {
+                tokenizer.skip();
+                tokens++;
+            }
+        } catch (HTMLParseException e) {
+            // Malformed pages are counted up to where parsing failed
+        }
+        return tokens;
+    }
+}